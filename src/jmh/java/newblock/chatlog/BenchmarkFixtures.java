@@ -0,0 +1,162 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试共用的数据生成与插件目录搭建
+ * <p>
+ * 所有数据都由固定种子生成，同样的参数每次得到同样的词表与消息。
+ */
+final class BenchmarkFixtures {
+    static final Logger LOGGER = NOPLogger.NOP_LOGGER;
+
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    // 模拟服务器里常见的聊天内容：中英混杂、短句、表情与数字
+    private static final String[] EN_WORDS = {
+            "hi", "hello", "gg", "lol", "anyone", "trade", "diamond", "sword", "base", "home",
+            "spawn", "tp", "me", "pls", "where", "is", "the", "nether", "end", "farm",
+            "iron", "gold", "server", "lag", "afk", "brb", "thanks", "nice", "build", "wow"
+    };
+    private static final String[] ZH_WORDS = {
+            "你好", "大家好", "有人吗", "求组队", "出售", "钻石", "附魔", "下界", "末地", "刷怪塔",
+            "卡了", "服务器", "谢谢", "厉害", "来玩", "我家", "传送", "一起", "挖矿", "村民",
+            "红石", "建筑", "好看", "哈哈哈", "晚安", "早上好", "收", "金币", "铁傀儡", "生存"
+    };
+    private static final String[] DECORATIONS = {"!", "?", "~", "233", "666", ":)", "qwq", "…", "。", "！"};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 生成违禁词列表，一部分是纯字面量，一部分是带字符类与量词的正则
+     *
+     * @param count 规则数量
+     * @param regexShare 正则规则所占比例
+     * @param seed 随机种子
+     * @return 规则列表，每项为 filter.yml 中的一行
+     */
+    static List<String> patterns(int count, double regexShare, long seed) {
+        Random random = new Random(seed);
+        List<String> patterns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String word = word(random, 4 + random.nextInt(5));
+            if (random.nextDouble() < regexShare) {
+                // 常见写法：某个字母允许替换成数字，结尾允许重复
+                int pos = random.nextInt(word.length());
+                patterns.add(word.substring(0, pos) + "[" + word.charAt(pos) + "0-9]" + word.substring(pos + 1) + "+");
+            } else {
+                patterns.add(word);
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * 生成一组消息，其中约 hitRatio 比例的消息包含一个违禁词
+     *
+     * @param count 消息数量
+     * @param length 每条消息的大致长度（字符）
+     * @param hitRatio 命中比例
+     * @param corpus 语料：en 或 zh
+     * @param forbidden 可插入的违禁词（取规则中的字面量部分）
+     * @param seed 随机种子
+     * @return 消息数组
+     */
+    static String[] messages(int count, int length, double hitRatio, String corpus, List<String> forbidden, long seed) {
+        Random random = new Random(seed);
+        String[] words = "zh".equals(corpus) ? ZH_WORDS : EN_WORDS;
+        String separator = "zh".equals(corpus) ? "" : " ";
+        String[] messages = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder(length + 16);
+            while (sb.length() < length) {
+                if (sb.length() > 0) {
+                    sb.append(separator);
+                }
+                sb.append(random.nextInt(8) == 0 ? DECORATIONS[random.nextInt(DECORATIONS.length)] : words[random.nextInt(words.length)]);
+            }
+            sb.setLength(length);
+            if (!forbidden.isEmpty() && random.nextDouble() < hitRatio) {
+                String word = forbidden.get(random.nextInt(forbidden.size()));
+                int at = random.nextInt(Math.max(1, length - word.length()));
+                sb.replace(at, Math.min(length, at + word.length()), word);
+            }
+            messages[i] = sb.toString();
+        }
+        return messages;
+    }
+
+    /**
+     * 取规则中可直接插入消息、保证能命中的文本
+     *
+     * @param patterns 规则列表
+     * @return 命中样本
+     */
+    static List<String> hitSamples(List<String> patterns) {
+        List<String> samples = new ArrayList<>(patterns.size());
+        for (String p : patterns) {
+            // 正则规则 ab[c0-9]d+ 取 abcd
+            samples.add(p.replaceAll("\\[(.)0-9]", "$1").replace("+", ""));
+        }
+        return samples;
+    }
+
+    /**
+     * 在临时目录中搭建插件目录：写入 config.yml、filter.yml 与 filter_replace.yml
+     *
+     * @param config config.yml 的内容
+     * @param forbidden filter.yml 中的规则
+     * @param replace filter_replace.yml 中的规则
+     * @return 插件目录
+     */
+    static File pluginDir(String config, List<String> forbidden, List<String> replace) {
+        try {
+            Path dir = Files.createTempDirectory("chatlog-jmh");
+            Files.writeString(dir.resolve("config.yml"), config, StandardCharsets.UTF_8);
+            Files.write(dir.resolve("filter.yml"), forbidden, StandardCharsets.UTF_8);
+            StringBuilder sb = new StringBuilder("replace_with: '*'\npatterns:\n");
+            for (String p : replace) {
+                sb.append("  - '").append(p.replace("'", "''")).append("'\n");
+            }
+            Files.writeString(dir.resolve("filter_replace.yml"), sb.toString(), StandardCharsets.UTF_8);
+            return dir.toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 删除插件目录
+     *
+     * @param dir 插件目录
+     */
+    static void delete(File dir) {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String word(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = LETTERS.charAt(random.nextInt(LETTERS.length()));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,107 @@
+package newblock.chatlog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 一条聊天消息在事件线程上的完整处理：用户名检查、违禁词检查与替换、写日志
+ * <p>
+ * 步骤与 {@link Chatlog#onPlayerChat} 相同，但不构造 Velocity 的事件与玩家对象，
+ * 也不执行处罚命令。消息池中重复的消息会命中判定缓存，接近真实服务器的刷屏情况。
+ */
+@State(Scope.Benchmark)
+public class ChatPipelineBenchmark {
+    private static final int MESSAGE_POOL = 1024;
+    private static final int PLAYERS = 64;
+
+    @Param({"1000", "100000"})
+    public int patternCount;
+
+    @Param({"false", "true"})
+    public boolean messageCache;
+
+    @Param({"0.01"})
+    public double hitRatio;
+
+    @Param({"zh"})
+    public String corpus;
+
+    private File pluginDir;
+    private FilterManager filterManager;
+    private UserNameCache userNameCache;
+    private LogManager logManager;
+    private RecentMessages recentMessages;
+    private String[] messages;
+    private UUID[] uuids;
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<String> patterns = BenchmarkFixtures.patterns(patternCount, 0.2, 42);
+        String config = ""
+                + "UserNameCheck: true\n"
+                + "AsyncLog: true\n"
+                + "AsyncLogOverflowPolicy: DROP_OLDEST\n"
+                + "MessageCache: " + messageCache + "\n";
+        pluginDir = BenchmarkFixtures.pluginDir(config, patterns, patterns.subList(0, Math.min(100, patterns.size())));
+        ChatlogConfig chatlogConfig = new ChatlogConfig(BenchmarkFixtures.LOGGER, pluginDir);
+        chatlogConfig.loadConfig();
+        filterManager = new FilterManager(BenchmarkFixtures.LOGGER, chatlogConfig);
+        filterManager.setReplaceConfig(new FilterReplaceConfig(BenchmarkFixtures.LOGGER, pluginDir));
+        userNameCache = new UserNameCache(filterManager);
+        logManager = new LogManager(BenchmarkFixtures.LOGGER, pluginDir, chatlogConfig);
+        recentMessages = new RecentMessages(chatlogConfig.getViolationContextSize());
+
+        // 消息池的一半是重复消息，模拟刷屏
+        String[] unique = BenchmarkFixtures.messages(MESSAGE_POOL / 2, 48, hitRatio, corpus,
+                BenchmarkFixtures.hitSamples(patterns), 7);
+        messages = new String[MESSAGE_POOL];
+        for (int i = 0; i < MESSAGE_POOL; i++) {
+            messages[i] = unique[(i * 31) % unique.length];
+        }
+        uuids = new UUID[PLAYERS];
+        names = new String[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            uuids[i] = new UUID(0, i);
+            names[i] = "Player_" + i;
+            // 与登录时一致，先为玩家创建记录环，否则 record 与 snapshot 不做任何事
+            recentMessages.track(uuids[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        logManager.shutdown();
+        BenchmarkFixtures.delete(pluginDir);
+    }
+
+    @Benchmark
+    public FilterManager.Result onPlayerChat() {
+        int i = next++;
+        int player = i & (PLAYERS - 1);
+        String message = messages[i & (MESSAGE_POOL - 1)];
+        if (userNameCache.isForbidden(uuids[player], names[player])) {
+            return FilterManager.Result.BLOCKED;
+        }
+        FilterManager.Result result = filterManager.checkMessage(message);
+        if (result.blocked()) {
+            logManager.logWarning("survival", names[player], message, recentMessages.snapshot(uuids[player], names[player]));
+        } else if (result.replaced() != null) {
+            logManager.logChat("survival", names[player], message + " -> " + result.replaced());
+        } else {
+            logManager.logChat("survival", names[player], message);
+        }
+        recentMessages.record(uuids[player], "survival", message, false);
+        return result;
+    }
+}
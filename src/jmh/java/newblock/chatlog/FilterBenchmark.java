@@ -0,0 +1,79 @@
+package newblock.chatlog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * 违禁词检查与替换的开销
+ * <p>
+ * 违禁词与替换规则使用同一份词表，消息按 hitRatio 插入违禁词。
+ * 缓存关闭，测得的是每条消息完整扫描一次的开销。
+ */
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+    private static final int MESSAGE_POOL = 1024;
+
+    @Param({"10", "1000", "100000"})
+    public int patternCount;
+
+    @Param({"0.2"})
+    public double regexShare;
+
+    @Param({"16", "64", "256"})
+    public int messageLength;
+
+    @Param({"0", "0.01", "0.5"})
+    public double hitRatio;
+
+    @Param({"en", "zh"})
+    public String corpus;
+
+    private File pluginDir;
+    private FilterManager filterManager;
+    private String[] messages;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<String> patterns = BenchmarkFixtures.patterns(patternCount, regexShare, 42);
+        pluginDir = BenchmarkFixtures.pluginDir("MessageCache: false\n", patterns, patterns);
+        ChatlogConfig config = new ChatlogConfig(BenchmarkFixtures.LOGGER, pluginDir);
+        config.loadConfig();
+        filterManager = new FilterManager(BenchmarkFixtures.LOGGER, config);
+        filterManager.setReplaceConfig(new FilterReplaceConfig(BenchmarkFixtures.LOGGER, pluginDir));
+        messages = BenchmarkFixtures.messages(MESSAGE_POOL, messageLength, hitRatio, corpus,
+                BenchmarkFixtures.hitSamples(patterns), 7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFixtures.delete(pluginDir);
+    }
+
+    private String nextMessage() {
+        return messages[next++ & (MESSAGE_POOL - 1)];
+    }
+
+    @Benchmark
+    public boolean containsForbiddenWords() {
+        return filterManager.containsForbiddenWords(nextMessage());
+    }
+
+    @Benchmark
+    public String replaceFilteredWords() {
+        return filterManager.replaceFilteredWords(nextMessage());
+    }
+
+    @Benchmark
+    public FilterManager.Result checkMessage() {
+        return filterManager.checkMessage(nextMessage());
+    }
+}
@@ -0,0 +1,62 @@
+package newblock.chatlog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * 写一条聊天日志的开销（事件线程上的部分）
+ * <p>
+ * 同步模式包含格式化、写入与刷盘；异步模式只包含放入队列，队列满时按溢出策略处理。
+ */
+@State(Scope.Benchmark)
+public class LogBenchmark {
+    private static final int MESSAGE_POOL = 1024;
+
+    @Param({"false", "true"})
+    public boolean asyncLog;
+
+    @Param({"BLOCK", "DROP_OLDEST"})
+    public String overflowPolicy;
+
+    @Param({"64", "256"})
+    public int messageLength;
+
+    private File pluginDir;
+    private LogManager logManager;
+    private String[] messages;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String config = ""
+                + "AsyncLog: " + asyncLog + "\n"
+                + "AsyncLogOverflowPolicy: " + overflowPolicy + "\n"
+                + "LogRotateDaily: true\n"
+                + "LogRotateMaxSizeMb: 64\n"
+                + "LogCompression: NONE\n";
+        pluginDir = BenchmarkFixtures.pluginDir(config, List.of(), List.of());
+        ChatlogConfig chatlogConfig = new ChatlogConfig(BenchmarkFixtures.LOGGER, pluginDir);
+        chatlogConfig.loadConfig();
+        logManager = new LogManager(BenchmarkFixtures.LOGGER, pluginDir, chatlogConfig);
+        messages = BenchmarkFixtures.messages(MESSAGE_POOL, messageLength, 0, "zh", List.of(), 11);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        logManager.shutdown();
+        BenchmarkFixtures.delete(pluginDir);
+    }
+
+    @Benchmark
+    public void logChat() {
+        logManager.logChat("survival", "Steve", messages[next++ & (MESSAGE_POOL - 1)]);
+    }
+}
@@ -0,0 +1,205 @@
+package newblock.chatlog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 多字面量匹配自动机（Aho-Corasick）
+ * <p>
+ * 构建完成后不可变，可被多个线程同时使用。只对 US-ASCII 字母做大小写折叠，
+ * 与 {@link java.util.regex.Pattern#CASE_INSENSITIVE} 未配合 UNICODE_CASE 时的行为一致。
+ */
+public final class AhoCorasick {
+
+    /**
+     * 匹配回调
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+        /**
+         * 找到一个字面量
+         *
+         * @param id 字面量编号（加入顺序）
+         * @param start 起始位置（含）
+         * @param end 结束位置（不含）
+         * @return 返回false时停止扫描
+         */
+        boolean onMatch(int id, int start, int end);
+    }
+
+    private final int[] edgeStart;     // 节点 i 的出边位于 [edgeStart[i], edgeStart[i + 1])
+    private final char[] edgeChars;    // 出边字符，每个节点内有序
+    private final int[] edgeTargets;
+    private final int[] fail;
+    private final int[] output;        // 恰好在该节点结束的字面量编号，无则为 -1
+    private final int[] outputLink;    // 沿失败链最近的有输出节点，无则为 -1
+    private final int[] lengths;       // 各字面量长度
+
+    private AhoCorasick(List<String> literals) {
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        children.add(new TreeMap<>());
+        outputs.add(-1);
+
+        lengths = new int[literals.size()];
+        for (int id = 0; id < literals.size(); id++) {
+            String literal = literals.get(id);
+            lengths[id] = literal.length();
+            int node = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                char c = fold(literal.charAt(i));
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    outputs.add(-1);
+                    children.get(node).put(c, next);
+                }
+                node = next;
+            }
+            if (outputs.get(node) < 0) {
+                // 重复的字面量只保留第一个编号
+                outputs.set(node, id);
+            }
+        }
+
+        int nodeCount = children.size();
+        edgeStart = new int[nodeCount + 1];
+        int edgeCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            edgeStart[node] = edgeCount;
+            edgeCount += children.get(node).size();
+        }
+        edgeStart[nodeCount] = edgeCount;
+        edgeChars = new char[edgeCount];
+        edgeTargets = new int[edgeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            int e = edgeStart[node];
+            for (Map.Entry<Character, Integer> edge : children.get(node).entrySet()) {
+                edgeChars[e] = edge.getKey();
+                edgeTargets[e] = edge.getValue();
+                e++;
+            }
+        }
+
+        output = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            output[node] = outputs.get(node);
+        }
+        fail = new int[nodeCount];
+        outputLink = new int[nodeCount];
+        Arrays.fill(outputLink, -1);
+
+        // 按层次遍历计算失败指针
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            queue.add(edgeTargets[e]);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                char c = edgeChars[e];
+                int child = edgeTargets[e];
+                int f = fail[node];
+                int next;
+                while ((next = child(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next >= 0 ? next : 0;
+                int failNode = fail[child];
+                outputLink[child] = output[failNode] >= 0 ? failNode : outputLink[failNode];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * 构建自动机
+     *
+     * @param literals 字面量列表，编号即列表下标
+     * @return 自动机
+     */
+    public static AhoCorasick build(List<String> literals) {
+        return new AhoCorasick(literals);
+    }
+
+    /**
+     * 文本中是否出现任意一个字面量
+     *
+     * @param text 要扫描的文本
+     * @return 出现任意字面量返回true
+     */
+    public boolean containsAny(CharSequence text) {
+        int node = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            node = step(node, fold(text.charAt(i)));
+            if (output[node] >= 0 || outputLink[node] >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 单次扫描报告所有出现位置（包括相互重叠的），按结束位置递增
+     *
+     * @param text 要扫描的文本
+     * @param listener 匹配回调
+     */
+    public void forEachMatch(CharSequence text, MatchListener listener) {
+        int node = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            node = step(node, fold(text.charAt(i)));
+            int out = output[node] >= 0 ? node : outputLink[node];
+            while (out >= 0) {
+                int id = output[out];
+                if (!listener.onMatch(id, i + 1 - lengths[id], i + 1)) {
+                    return;
+                }
+                out = outputLink[out];
+            }
+        }
+    }
+
+    /**
+     * 获取字面量数量
+     *
+     * @return 字面量数量
+     */
+    public int size() {
+        return lengths.length;
+    }
+
+    private int step(int node, char c) {
+        int next;
+        while ((next = child(node, c)) < 0 && node != 0) {
+            node = fail[node];
+        }
+        return next >= 0 ? next : 0;
+    }
+
+    private int child(int node, char c) {
+        int lo = edgeStart[node];
+        int hi = edgeStart[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = edgeChars[mid];
+            if (m < c) {
+                lo = mid + 1;
+            } else if (m > c) {
+                hi = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    private static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
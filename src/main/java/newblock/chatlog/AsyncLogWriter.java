@@ -0,0 +1,243 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 异步批量日志写入器
+ * <p>
+ * 事件线程只负责把记录放入有界队列，由单独的写入线程交给各个 {@link LogSink}，
+ * 按条数或时间间隔批量刷盘。
+ */
+public class AsyncLogWriter {
+
+    /**
+     * 队列已满时的处理策略
+     */
+    public enum OverflowPolicy {
+        BLOCK,          // 阻塞事件线程直到队列有空位
+        DROP_OLDEST,    // 丢弃队列中最旧的记录
+        SPILL           // 溢出到无界内存缓冲区，由写入线程稍后写入
+    }
+
+    private final Logger logger;
+    private final BlockingQueue<LogEntry> queue;
+    private final Queue<LogEntry> spill;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final List<LogSink> sinks;
+    private final Thread thread;
+    private final AtomicLong dropped;
+    private final Consumer<LogEntry> chatEcho;  // 写入聊天后在控制台回显，为null时不回显
+
+    private volatile boolean running;
+
+    /**
+     * 创建异步日志写入器
+     *
+     * @param logger 日志记录器
+     * @param sinks 输出目标
+     * @param queueSize 队列容量
+     * @param batchSize 累计多少条后刷盘
+     * @param flushIntervalMillis 最长刷盘间隔（毫秒）
+     * @param overflowPolicy 队列满时的策略
+     * @param chatEcho 写入聊天记录后在写入线程上回显到控制台，为null时不回显
+     */
+    public AsyncLogWriter(Logger logger, List<LogSink> sinks,
+                          int queueSize, int batchSize, long flushIntervalMillis, OverflowPolicy overflowPolicy,
+                          Consumer<LogEntry> chatEcho) {
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.spill = new ConcurrentLinkedQueue<>();
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.sinks = List.copyOf(sinks);
+        this.dropped = new AtomicLong();
+        this.chatEcho = chatEcho;
+        this.thread = new Thread(this::run, "ChatLog-Writer");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 启动写入线程
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * 提交一条记录
+     *
+     * @param entry 日志记录
+     * @return 如果写入器已关闭或写入线程已退出、记录未被接收则返回false，由调用方自行写入
+     */
+    public boolean submit(LogEntry entry) {
+        if (!running || !thread.isAlive()) {
+            return false;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                while (!queue.offer(entry)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+            }
+            case SPILL -> {
+                // 一旦开始溢出，后续记录也进入溢出缓冲区，保证写入顺序
+                if (!spill.isEmpty() || !queue.offer(entry)) {
+                    spill.add(entry);
+                }
+            }
+            default -> {
+                try {
+                    // 定时醒来检查写入线程，避免线程意外退出后永久阻塞
+                    while (!queue.offer(entry, flushIntervalMillis, TimeUnit.MILLISECONDS)) {
+                        if (!thread.isAlive()) {
+                            return false;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 停止接收新记录，等待写入线程把队列中剩余的记录全部写完并关闭文件
+     *
+     * @param timeoutMillis 最长等待时间（毫秒）
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("异步日志写入线程未能在 {} 毫秒内结束，剩余 {} 条记录", timeoutMillis, pendingCount());
+            return;
+        }
+
+        // 写入线程退出后仍可能有事件线程在关闭瞬间放入的记录，在此补写
+        List<LogEntry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        LogEntry spilled;
+        while ((spilled = spill.poll()) != null) {
+            rest.add(spilled);
+        }
+        if (!rest.isEmpty()) {
+            writeBatch(rest);
+            closeSinks();
+        }
+    }
+
+    /**
+     * 获取因队列已满而被丢弃的记录数
+     *
+     * @return 丢弃数量
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 获取尚未写入的记录数
+     *
+     * @return 队列与溢出缓冲区中的记录数
+     */
+    public int pendingCount() {
+        return queue.size() + spill.size();
+    }
+
+    private void run() {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        int unflushed = 0;
+        long lastFlush = System.currentTimeMillis();
+
+        while (running || !queue.isEmpty() || !spill.isEmpty()) {
+            try {
+                // 溢出缓冲区中还有记录时不等待
+                LogEntry first = spill.isEmpty()
+                        ? queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS)
+                        : queue.poll();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                // 只在关闭时被中断，继续把剩余记录写完
+                running = false;
+            }
+            LogEntry spilled;
+            while (batch.size() < batchSize && (spilled = spill.poll()) != null) {
+                batch.add(spilled);
+            }
+
+            writeBatch(batch);
+            unflushed += batch.size();
+            batch.clear();
+
+            long now = System.currentTimeMillis();
+            if (unflushed >= batchSize || (unflushed > 0 && now - lastFlush >= flushIntervalMillis)) {
+                for (LogSink sink : sinks) {
+                    try {
+                        sink.flush();
+                    } catch (RuntimeException e) {
+                        logger.error("日志刷盘失败: {}", sink.getClass().getSimpleName(), e);
+                    }
+                }
+                unflushed = 0;
+                lastFlush = now;
+            }
+        }
+
+        closeSinks();
+        long droppedCount = dropped.get();
+        if (droppedCount > 0) {
+            logger.warn("异步日志队列溢出，共丢弃 {} 条记录", droppedCount);
+        }
+    }
+
+    private void closeSinks() {
+        for (LogSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                logger.error("关闭日志输出失败: {}", sink.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private void writeBatch(List<LogEntry> batch) {
+        for (LogEntry entry : batch) {
+            for (LogSink sink : sinks) {
+                // 单个输出目标出错不能让写入线程退出，否则后续提交会一直阻塞或无限溢出
+                try {
+                    sink.write(entry);
+                } catch (RuntimeException e) {
+                    logger.error("日志写入失败: {}", sink.getClass().getSimpleName(), e);
+                }
+            }
+            if (chatEcho != null && entry.type() == LogEntry.Type.CHAT) {
+                chatEcho.accept(entry);
+            }
+        }
+    }
+}
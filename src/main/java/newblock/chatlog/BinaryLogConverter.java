@@ -0,0 +1,144 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 文本日志与二进制日志之间的转换
+ * <p>
+ * 导入时逐行解析 chat.log、warn.log 或其 .gz 归档，文本中的时间只精确到秒；
+ * 导出时经由 {@link RollingLogFile} 写出，格式与插件直接写入的文本日志逐字节相同。
+ */
+public final class BinaryLogConverter {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // [时间] [COMMAND|WARN|CONTEXT] [服务器] 玩家: 内容
+    private static final Pattern LINE = Pattern.compile(
+            "^\\[(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2})] (?:\\[(COMMAND|WARN|CONTEXT)] )?\\[([^\\]]*)] (.*?): (.*)$");
+
+    private BinaryLogConverter() {
+    }
+
+    /**
+     * 转换结果
+     *
+     * @param converted 转换的记录数
+     * @param skipped 无法解析而跳过的行数
+     */
+    public record Result(long converted, long skipped) {
+    }
+
+    /**
+     * 把文本日志导入二进制日志
+     *
+     * @param logger 日志记录器
+     * @param textFile 文本日志，.gz 结尾时按 GZIP 读取
+     * @param store 二进制日志
+     * @return 转换结果
+     * @throws IOException 读取失败时抛出
+     */
+    public static Result importText(Logger logger, File textFile, BinaryLogStore store) throws IOException {
+        ZoneId zone = ZoneId.systemDefault();
+        long converted = 0;
+        long skipped = 0;
+        InputStream in = new FileInputStream(textFile);
+        if (textFile.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LogEntry entry = parseLine(line, zone);
+                if (entry == null) {
+                    if (!line.isEmpty()) {
+                        skipped++;
+                    }
+                    continue;
+                }
+                store.write(entry);
+                converted++;
+            }
+        } finally {
+            store.flush();
+        }
+        logger.info("已把 {} 导入二进制日志: {} 条，跳过 {} 行", textFile.getName(), converted, skipped);
+        return new Result(converted, skipped);
+    }
+
+    /**
+     * 把二进制日志导出为文本日志，违规记录及其上下文写入 warnFile，其余写入 chatFile
+     *
+     * @param logger 日志记录器
+     * @param store 二进制日志
+     * @param from 起始时间（毫秒，含）
+     * @param to 结束时间（毫秒，含）
+     * @param chatFile 聊天与命令的输出文件
+     * @param warnFile 违规记录的输出文件
+     * @return 转换结果
+     * @throws IOException 读取失败时抛出
+     */
+    public static Result exportText(Logger logger, BinaryLogStore store, long from, long to,
+                                    File chatFile, File warnFile) throws IOException {
+        RollingLogFile chatLog = new RollingLogFile(logger, chatFile, "chat", null);
+        RollingLogFile warnLog = new RollingLogFile(logger, warnFile, "warn", null);
+        long[] converted = new long[1];
+        try {
+            store.visit(null, from, to, entry -> {
+                (entry.type().isWarning() ? warnLog : chatLog).write(entry);
+                converted[0]++;
+                return true;
+            });
+        } finally {
+            chatLog.close();
+            warnLog.close();
+        }
+        logger.info("已从二进制日志导出 {} 条记录到 {} 与 {}", converted[0], chatFile.getName(), warnFile.getName());
+        return new Result(converted[0], 0);
+    }
+
+    /**
+     * 解析文本日志中的一行
+     *
+     * @param line 日志行
+     * @param zone 时间戳所在时区
+     * @return 日志记录，格式不符时返回null
+     */
+    static LogEntry parseLine(String line, ZoneId zone) {
+        Matcher m = LINE.matcher(line);
+        if (!m.matches()) {
+            return null;
+        }
+        long timestamp;
+        try {
+            timestamp = LocalDateTime.parse(m.group(1), DATE_FORMATTER).atZone(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+        String tag = m.group(2);
+        String content = m.group(5);
+        LogEntry.Type type;
+        if ("COMMAND".equals(tag)) {
+            if (!content.startsWith("/")) {
+                return null;
+            }
+            type = LogEntry.Type.COMMAND;
+            content = content.substring(1);
+        } else {
+            type = tag == null ? LogEntry.Type.CHAT : LogEntry.Type.valueOf(tag);
+        }
+        return new LogEntry(type, timestamp, m.group(3), m.group(4), content);
+    }
+}
@@ -0,0 +1,774 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 带索引的二进制日志
+ * <p>
+ * 与 chat.log、warn.log 并行写入 binlog 目录，按大小切分为段文件（以段内第一条记录的毫秒时间戳命名）。
+ * 段内每条记录带长度前缀，服务器名与玩家名在段内首次出现时写入一条字典记录，之后只写编号。
+ * 每 {@value #BLOCK_ENTRIES} 条记录为一个块，段关闭时把稀疏时间索引（每块的偏移与时间范围）
+ * 和玩家索引（玩家出现过的块）写入同名的 .idx 文件。查询某玩家某段时间的记录时只读取
+ * 时间范围重叠且该玩家出现过的块，不需要扫描整个文件。
+ * <p>
+ * 没有 .idx 的段（进程异常退出时正在写入的段）在第一次查询时扫描重建索引，末尾不完整的记录被忽略。
+ * 导入用的实例（{@link #forImport}）把写入的段命名为 .seg.importing，{@link #close()} 时才写出索引并改名为 .seg，
+ * 导入过程中的查询与导出看不到写了一半的段；导入失败时 {@link #abort()} 删除这些段，重试不会重复导入。
+ * 进程在导入中途退出时留下的 .importing 文件可以直接删除。
+ */
+public class BinaryLogStore implements LogSink {
+    static final int MAGIC = 0x43484C47;   // "CHLG"
+    static final int VERSION = 1;
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+    static final String IMPORTING_SUFFIX = ".importing";
+
+    private static final int BLOCK_ENTRIES = 128;
+    private static final int HEADER_BYTES = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte KIND_SERVER = 0;
+    private static final byte KIND_PLAYER = 1;
+    private static final byte KIND_ENTRY = 2;
+    private static final int DICT_HEAD_BYTES = 4 + 1 + 4;               // 长度、类别、编号
+    private static final int ENTRY_HEAD_BYTES = 4 + 1 + 8 + 1 + 4 + 4;  // 长度、类别、时间、类型、服务器、玩家
+    private static final LogEntry.Type[] TYPES = LogEntry.Type.values();
+
+    private final Logger logger;
+    private final File dir;
+    private final long maxSegmentBytes;
+    private final boolean staged;                          // 段写完后才改名为 .seg，用于导入
+    private final Map<File, SegmentIndex> sealedIndexes;   // 已关闭的段不再变化，索引可以缓存
+    private final List<StagedSegment> stagedSegments;      // 导入时已写完、等待改名的段
+    private final ByteBuffer buffer;                       // 已编码但尚未写入文件的内容
+    private final CharsetEncoder utf8;
+    private ByteBuffer scratch;                            // 编码字符串用的临时缓冲区
+
+    private FileChannel channel;
+    private File activeFile;
+    private long activeStart;
+    private IndexBuilder activeIndex;
+    private long position;                                 // 当前段的逻辑长度（含缓冲区中的内容）
+
+    /**
+     * 创建二进制日志
+     *
+     * @param logger 日志记录器
+     * @param dir 段文件所在目录
+     * @param maxSegmentBytes 单个段的大小上限
+     */
+    public BinaryLogStore(Logger logger, File dir, long maxSegmentBytes) {
+        this(logger, dir, maxSegmentBytes, false);
+    }
+
+    /**
+     * 创建导入用的二进制日志，段写完后才对查询可见，不会与正在运行的二进制日志互相干扰
+     *
+     * @param logger 日志记录器
+     * @param dir 段文件所在目录
+     * @param maxSegmentBytes 单个段的大小上限
+     * @return 二进制日志
+     */
+    public static BinaryLogStore forImport(Logger logger, File dir, long maxSegmentBytes) {
+        return new BinaryLogStore(logger, dir, maxSegmentBytes, true);
+    }
+
+    private BinaryLogStore(Logger logger, File dir, long maxSegmentBytes, boolean staged) {
+        this.logger = logger;
+        this.staged = staged;
+        this.dir = dir;
+        this.maxSegmentBytes = Math.max(BUFFER_SIZE, maxSegmentBytes);
+        this.sealedIndexes = new ConcurrentHashMap<>();
+        this.stagedSegments = new ArrayList<>();
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.utf8 = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.scratch = ByteBuffer.allocate(1024);
+    }
+
+    /**
+     * 追加一条记录（不刷盘）
+     *
+     * @param entry 日志记录
+     * @throws UncheckedIOException 导入用的实例写入失败时抛出，已写入的段已被删除
+     */
+    @Override
+    public synchronized void write(LogEntry entry) {
+        try {
+            if (channel != null && position >= maxSegmentBytes) {
+                seal();
+            }
+            if (channel == null) {
+                open(entry.timestamp());
+            }
+            int serverId = intern(KIND_SERVER, activeIndex.servers, entry.serverName());
+            int playerId = intern(KIND_PLAYER, activeIndex.players, entry.playerName());
+            encode(entry.content());
+            long offset = position;
+            reserve(ENTRY_HEAD_BYTES);
+            buffer.putInt(ENTRY_HEAD_BYTES - 4 + scratch.remaining())
+                    .put(KIND_ENTRY)
+                    .putLong(entry.timestamp())
+                    .put((byte) entry.type().ordinal())
+                    .putInt(serverId)
+                    .putInt(playerId);
+            putScratch();
+            activeIndex.onEntry(offset, entry.timestamp(), playerId);
+        } catch (IOException e) {
+            if (staged) {
+                abort();
+                throw new UncheckedIOException(e);
+            }
+            logger.error("写入二进制日志时发生错误: {}", activeFile != null ? activeFile.getName() : dir.getName(), e);
+            close();
+        }
+    }
+
+    /**
+     * 把缓冲区内容写入文件
+     *
+     * @throws UncheckedIOException 导入用的实例写入失败时抛出，已写入的段已被删除
+     */
+    @Override
+    public synchronized void flush() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            drain();
+        } catch (IOException e) {
+            if (staged) {
+                abort();
+                throw new UncheckedIOException(e);
+            }
+            logger.error("刷新二进制日志时发生错误: {}", activeFile.getName(), e);
+            close();
+        }
+    }
+
+    /**
+     * 关闭当前段并写出索引，下次写入时开始新的段；导入用的实例在此把写完的段改名为 .seg
+     */
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                seal();
+            } catch (IOException e) {
+                logger.error("关闭二进制日志时发生错误: {}", activeFile.getName(), e);
+                if (staged) {
+                    // 最后一段不完整，整个导入作废
+                    abort();
+                    return;
+                }
+                discardActive();
+            }
+        }
+        if (staged) {
+            publishStaged();
+        }
+    }
+
+    /**
+     * 放弃导入：关闭当前段并删除本实例写入的全部 .importing 文件
+     *
+     * @throws IllegalStateException 不是导入用的实例时抛出
+     */
+    public synchronized void abort() {
+        if (!staged) {
+            throw new IllegalStateException("只能放弃导入用的二进制日志");
+        }
+        List<File> files = new ArrayList<>();
+        if (activeFile != null) {
+            files.add(activeFile);
+        }
+        discardActive();
+        for (StagedSegment segment : stagedSegments) {
+            files.add(segment.file());
+        }
+        stagedSegments.clear();
+        for (File file : files) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                logger.warn("无法删除未完成的导入段: {}", file.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 查询记录
+     *
+     * @param player 玩家名（不区分大小写），为null时不按玩家过滤
+     * @param from 起始时间（毫秒，含）
+     * @param to 结束时间（毫秒，含）
+     * @param limit 最多返回的条数
+     * @return 按写入顺序排列的记录
+     * @throws IOException 读取段文件失败时抛出
+     */
+    public List<LogEntry> query(String player, long from, long to, int limit) throws IOException {
+        List<LogEntry> result = new ArrayList<>();
+        if (limit > 0) {
+            visit(player, from, to, entry -> {
+                result.add(entry);
+                return result.size() < limit;
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 按写入顺序逐条访问记录，不把结果全部放入内存
+     *
+     * @param player 玩家名（不区分大小写），为null时不按玩家过滤
+     * @param from 起始时间（毫秒，含）
+     * @param to 结束时间（毫秒，含）
+     * @param visitor 访问者，返回false时停止
+     * @throws IOException 读取段文件失败时抛出
+     */
+    public void visit(String player, long from, long to, Visitor visitor) throws IOException {
+        String playerKey = player != null ? player.toLowerCase(Locale.ROOT) : null;
+        for (File segment : listSegments()) {
+            if (segmentStart(segment) > to) {
+                // 段按首条记录的时间排序，之后的段都在查询范围之后
+                break;
+            }
+            SegmentIndex index = indexOf(segment);
+            if (index != null && !index.read(segment, playerKey, from, to, visitor)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 逐条接收查询结果
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param entry 日志记录
+         * @return 返回false时停止查询
+         */
+        boolean accept(LogEntry entry);
+    }
+
+    /**
+     * 获取按时间排序的段文件
+     *
+     * @return 段文件
+     */
+    public List<File> listSegments() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return List.of();
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(segmentStart(a), segmentStart(b)));
+        return Arrays.asList(files);
+    }
+
+    private SegmentIndex indexOf(File segment) throws IOException {
+        synchronized (this) {
+            if (segment.equals(activeFile)) {
+                drain();
+                return activeIndex.snapshot(position);
+            }
+        }
+        SegmentIndex cached = sealedIndexes.get(segment);
+        if (cached != null) {
+            return cached;
+        }
+        SegmentIndex index = SegmentIndex.load(indexFile(segment));
+        if (index == null) {
+            index = scan(segment);
+            if (index == null) {
+                return null;
+            }
+            logger.info("已重建二进制日志索引: {}", segment.getName());
+            index.save(indexFile(segment));
+        }
+        sealedIndexes.put(segment, index);
+        return index;
+    }
+
+    private void open(long timestamp) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir.getAbsolutePath());
+        }
+        long start = freeStart(timestamp);
+        File file = staged ? importingFile(start) : segmentFile(start);
+        while (file.exists()) {
+            start = freeStart(start + 1);
+            file = staged ? importingFile(start) : segmentFile(start);
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeFile = file;
+        activeStart = start;
+        activeIndex = new IndexBuilder();
+        buffer.clear();
+        buffer.putInt(MAGIC).putInt(VERSION);
+        position = HEADER_BYTES;
+    }
+
+    private void seal() throws IOException {
+        drain();
+        channel.close();
+        channel = null;
+        SegmentIndex index = activeIndex.snapshot(position);
+        File file = activeFile;
+        long start = activeStart;
+        activeFile = null;
+        activeIndex = null;
+        if (staged) {
+            stagedSegments.add(new StagedSegment(file, start, index));
+            return;
+        }
+        index.save(indexFile(file));
+        sealedIndexes.put(file, index);
+    }
+
+    private void discardActive() {
+        buffer.clear();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 已经记录过错误
+            }
+        }
+        channel = null;
+        activeFile = null;
+        activeIndex = null;
+    }
+
+    private void publishStaged() {
+        for (StagedSegment segment : stagedSegments) {
+            try {
+                sealedIndexes.put(publish(segment.file(), segment.start(), segment.index()), segment.index());
+            } catch (IOException e) {
+                logger.error("发布导入的二进制日志段时发生错误: {}", segment.file().getName(), e);
+            }
+        }
+        stagedSegments.clear();
+    }
+
+    /**
+     * 导入时已写完、等待改名的段
+     */
+    private record StagedSegment(File file, long start, SegmentIndex index) {
+    }
+
+    /**
+     * 把写完的导入段改名为 .seg：先写出索引再改名，其他实例看到这个段时索引已经就绪，不会扫描重建
+     *
+     * @return 改名后的段文件
+     */
+    private File publish(File importing, long start, SegmentIndex index) throws IOException {
+        while (true) {
+            // 自身的 .importing 文件不算占用，优先保留原来的段名
+            while (segmentFile(start).exists() || indexFile(segmentFile(start)).exists()) {
+                start++;
+            }
+            File segment = segmentFile(start);
+            index.save(indexFile(segment));
+            try {
+                Files.move(importing.toPath(), segment.toPath());
+                return segment;
+            } catch (FileAlreadyExistsException e) {
+                // 写出索引之后同名的段刚被创建，换一个名字
+                Files.deleteIfExists(indexFile(segment).toPath());
+                start++;
+            }
+        }
+    }
+
+    /**
+     * 从 start 开始找一个没有被占用的段名：段、索引与导入中的段都不存在
+     */
+    private long freeStart(long start) {
+        while (segmentFile(start).exists() || indexFile(segmentFile(start)).exists() || importingFile(start).exists()) {
+            start++;
+        }
+        return start;
+    }
+
+    private int intern(byte kind, Map<String, Integer> ids, String name) throws IOException {
+        String key = name != null ? name : "null";
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        int newId = ids.size();
+        ids.put(key, newId);
+        encode(key);
+        reserve(DICT_HEAD_BYTES);
+        buffer.putInt(DICT_HEAD_BYTES - 4 + scratch.remaining()).put(kind).putInt(newId);
+        putScratch();
+        return newId;
+    }
+
+    /**
+     * 把字符串按 UTF-8 编码进 scratch，完成后 scratch 处于读取模式
+     */
+    private void encode(String s) {
+        String value = s != null ? s : "null";
+        int max = (int) Math.ceil(value.length() * (double) utf8.maxBytesPerChar());
+        if (scratch.capacity() < max) {
+            scratch = ByteBuffer.allocate(max);
+        }
+        scratch.clear();
+        utf8.reset();
+        utf8.encode(CharBuffer.wrap(value), scratch, true);
+        utf8.flush(scratch);
+        scratch.flip();
+    }
+
+    private void putScratch() throws IOException {
+        while (scratch.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(buffer.remaining(), scratch.remaining());
+            ByteBuffer slice = scratch.duplicate();
+            slice.limit(slice.position() + n);
+            buffer.put(slice);
+            scratch.position(scratch.position() + n);
+            position += n;
+        }
+    }
+
+    /**
+     * 保证缓冲区中能放下定长的记录头，并把 position 推进到记录头之后
+     */
+    private void reserve(int headBytes) throws IOException {
+        if (buffer.remaining() < headBytes) {
+            drain();
+        }
+        position += headBytes;
+    }
+
+    private void drain() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private File segmentFile(long start) {
+        return new File(dir, String.format("%013d", start) + SEGMENT_SUFFIX);
+    }
+
+    private File importingFile(long start) {
+        return new File(dir, String.format("%013d", start) + SEGMENT_SUFFIX + IMPORTING_SUFFIX);
+    }
+
+    private static File indexFile(File segment) {
+        String name = segment.getName();
+        return new File(segment.getParentFile(), name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    private static long segmentStart(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 扫描段文件重建索引，末尾不完整的记录被忽略
+     */
+    private SegmentIndex scan(File segment) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+            long length = segment.length();
+            if (length < HEADER_BYTES || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("不是有效的二进制日志段，已跳过: {}", segment.getName());
+                return null;
+            }
+            IndexBuilder builder = new IndexBuilder();
+            long offset = HEADER_BYTES;
+            while (offset + 4 <= length) {
+                int bodyLength = in.readInt();
+                if (bodyLength < DICT_HEAD_BYTES - 4 || offset + 4 + bodyLength > length) {
+                    break;
+                }
+                byte[] body = new byte[bodyLength];
+                in.readFully(body);
+                ByteBuffer record = ByteBuffer.wrap(body);
+                byte kind = record.get();
+                if (kind == KIND_ENTRY && bodyLength < ENTRY_HEAD_BYTES - 4) {
+                    break;
+                }
+                if (kind == KIND_ENTRY) {
+                    long timestamp = record.getLong();
+                    record.get();
+                    record.getInt();
+                    builder.onEntry(offset, timestamp, record.getInt());
+                } else {
+                    int id = record.getInt();
+                    String name = new String(body, DICT_HEAD_BYTES - 4, bodyLength - (DICT_HEAD_BYTES - 4), StandardCharsets.UTF_8);
+                    (kind == KIND_SERVER ? builder.servers : builder.players).putIfAbsent(name, id);
+                }
+                offset += 4 + bodyLength;
+            }
+            return builder.snapshot(offset);
+        }
+    }
+
+    /**
+     * 正在写入的段的索引
+     */
+    private static final class IndexBuilder {
+        final Map<String, Integer> servers = new HashMap<>();
+        final Map<String, Integer> players = new HashMap<>();
+        final Map<Integer, List<Integer>> playerBlocks = new HashMap<>();
+        long[] offsets = new long[64];
+        long[] minTimes = new long[64];
+        long[] maxTimes = new long[64];
+        int blocks;
+        int entriesInBlock = BLOCK_ENTRIES;
+
+        void onEntry(long offset, long timestamp, int playerId) {
+            if (entriesInBlock == BLOCK_ENTRIES) {
+                if (blocks == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, blocks * 2);
+                    minTimes = Arrays.copyOf(minTimes, blocks * 2);
+                    maxTimes = Arrays.copyOf(maxTimes, blocks * 2);
+                }
+                offsets[blocks] = offset;
+                minTimes[blocks] = timestamp;
+                maxTimes[blocks] = timestamp;
+                blocks++;
+                entriesInBlock = 0;
+            }
+            int block = blocks - 1;
+            // 多个事件线程采集的时间戳可能略有乱序，块的时间范围取最小与最大值
+            minTimes[block] = Math.min(minTimes[block], timestamp);
+            maxTimes[block] = Math.max(maxTimes[block], timestamp);
+            entriesInBlock++;
+            List<Integer> list = playerBlocks.computeIfAbsent(playerId, k -> new ArrayList<>());
+            if (list.isEmpty() || list.get(list.size() - 1) != block) {
+                list.add(block);
+            }
+        }
+
+        SegmentIndex snapshot(long length) {
+            String[] serverNames = new String[servers.size()];
+            servers.forEach((name, id) -> serverNames[id] = name);
+            String[] playerNames = new String[players.size()];
+            players.forEach((name, id) -> playerNames[id] = name);
+            // 大小写不同的同名玩家合并为一个键
+            Map<String, int[]> byName = new HashMap<>();
+            playerBlocks.forEach((id, list) -> {
+                String key = id < playerNames.length && playerNames[id] != null
+                        ? playerNames[id].toLowerCase(Locale.ROOT) : "";
+                int[] merged = byName.get(key);
+                int[] own = list.stream().mapToInt(Integer::intValue).toArray();
+                byName.put(key, merged == null ? own
+                        : Arrays.stream(concat(merged, own)).distinct().sorted().toArray());
+            });
+            return new SegmentIndex(length, List.of(serverNames), List.of(playerNames),
+                    Arrays.copyOf(offsets, blocks), Arrays.copyOf(minTimes, blocks),
+                    Arrays.copyOf(maxTimes, blocks), byName);
+        }
+
+        private static int[] concat(int[] a, int[] b) {
+            int[] c = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, c, a.length, b.length);
+            return c;
+        }
+    }
+
+    /**
+     * 一个段的索引，构建后不可变
+     *
+     * @param length 段中有效内容的长度
+     * @param servers 服务器名，下标为编号
+     * @param players 玩家名，下标为编号
+     * @param offsets 每块第一条记录的偏移
+     * @param minTimes 每块的最早时间
+     * @param maxTimes 每块的最晚时间
+     * @param playerBlocks 小写玩家名 -> 出现过的块（升序）
+     */
+    record SegmentIndex(long length, List<String> servers, List<String> players,
+                        long[] offsets, long[] minTimes, long[] maxTimes, Map<String, int[]> playerBlocks) {
+
+        /**
+         * 读取段中符合条件的记录
+         *
+         * @return 访问者要求停止时返回false
+         */
+        boolean read(File segment, String playerKey, long from, long to, Visitor visitor) throws IOException {
+            int[] blocks;
+            if (playerKey != null) {
+                blocks = playerBlocks.get(playerKey);
+                if (blocks == null) {
+                    return true;
+                }
+            } else {
+                blocks = new int[offsets.length];
+                Arrays.setAll(blocks, i -> i);
+            }
+            try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+                for (int block : blocks) {
+                    if (maxTimes[block] < from || minTimes[block] > to) {
+                        continue;
+                    }
+                    long start = offsets[block];
+                    long end = block + 1 < offsets.length ? offsets[block + 1] : length;
+                    ByteBuffer data = ByteBuffer.allocate((int) (end - start));
+                    while (data.hasRemaining() && channel.read(data, start + data.position()) >= 0) {
+                        // 读满整个块
+                    }
+                    data.flip();
+                    while (data.remaining() >= 4) {
+                        int bodyLength = data.getInt();
+                        if (bodyLength > data.remaining()) {
+                            break;
+                        }
+                        int next = data.position() + bodyLength;
+                        if (data.get() == KIND_ENTRY) {
+                            long timestamp = data.getLong();
+                            LogEntry.Type type = TYPES[data.get()];
+                            String server = servers.get(data.getInt());
+                            String player = players.get(data.getInt());
+                            if (timestamp >= from && timestamp <= to
+                                    && (playerKey == null || player.equalsIgnoreCase(playerKey))) {
+                                String content = new String(data.array(), data.position(), next - data.position(),
+                                        StandardCharsets.UTF_8);
+                                if (!visitor.accept(new LogEntry(type, timestamp, server, player, content))) {
+                                    return false;
+                                }
+                            }
+                        }
+                        data.position(next);
+                    }
+                }
+            }
+            return true;
+        }
+
+        void save(File file) throws IOException {
+            // 临时文件名各不相同，多个实例同时写出同一个段的索引时不会写进同一个文件
+            File tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp").toFile();
+            try {
+                write(tmp);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp.toPath());
+                throw e;
+            }
+            if (!tmp.renameTo(file)) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private void write(File tmp) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(length);
+                writeNames(out, servers);
+                writeNames(out, players);
+                out.writeInt(offsets.length);
+                for (int i = 0; i < offsets.length; i++) {
+                    out.writeLong(offsets[i]);
+                    out.writeLong(minTimes[i]);
+                    out.writeLong(maxTimes[i]);
+                }
+                out.writeInt(playerBlocks.size());
+                for (Map.Entry<String, int[]> e : playerBlocks.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().length);
+                    for (int block : e.getValue()) {
+                        out.writeInt(block);
+                    }
+                }
+            }
+        }
+
+        static SegmentIndex load(File file) throws IOException {
+            if (!file.exists()) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return null;
+                }
+                long length = in.readLong();
+                List<String> servers = readNames(in);
+                List<String> players = readNames(in);
+                int blocks = in.readInt();
+                long[] offsets = new long[blocks];
+                long[] minTimes = new long[blocks];
+                long[] maxTimes = new long[blocks];
+                for (int i = 0; i < blocks; i++) {
+                    offsets[i] = in.readLong();
+                    minTimes[i] = in.readLong();
+                    maxTimes[i] = in.readLong();
+                }
+                int playerCount = in.readInt();
+                Map<String, int[]> playerBlocks = new HashMap<>(playerCount * 2);
+                for (int i = 0; i < playerCount; i++) {
+                    String key = in.readUTF();
+                    int[] list = new int[in.readInt()];
+                    for (int j = 0; j < list.length; j++) {
+                        list[j] = in.readInt();
+                    }
+                    playerBlocks.put(key, list);
+                }
+                return new SegmentIndex(length, servers, players, offsets, minTimes, maxTimes, playerBlocks);
+            } catch (EOFException e) {
+                // 索引写了一半，重新扫描段文件
+                return null;
+            }
+        }
+
+        private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+            out.writeInt(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+        }
+
+        private static List<String> readNames(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            List<String> names = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                names.add(in.readUTF());
+            }
+            return List.copyOf(names);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package newblock.chatlog;
 
 import com.google.inject.Inject;
+import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.command.CommandMeta;
 import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.command.CommandExecuteEvent;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
 import com.velocitypowered.api.event.player.PlayerChatEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
@@ -15,11 +20,20 @@ import com.velocitypowered.api.proxy.ServerConnection;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 
+import org.bstats.charts.SimplePie;
+import org.bstats.charts.SingleLineChart;
 import org.bstats.velocity.Metrics;
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 @Plugin(
         id = "chatlog",
@@ -31,6 +45,13 @@ import java.util.Optional;
 public class Chatlog {
 
     private static final int BSTATS_PLUGIN_ID = 26202;
+    private static final String FILTER_FILE = "filter.yml";
+    private static final String FILTER_REPLACE_FILE = "filter_replace.yml";
+    private static final long COMMAND_ALIAS_REFRESH_SECONDS = 10;
+    private static final long SUPPRESSED_SUMMARY_SECONDS = 10;
+    private static final long PUNISHMENT_TIMEOUT_SECONDS = 10;
+    private static final BooleanSupplier SYNC_CLAIM = () -> true;   // 同步过滤时不存在超时
+    private static final String RATE_LIMIT_BYPASS_PERMISSION = "chatlog.bypass.ratelimit";
 
     private final ProxyServer proxy;
     private final Logger logger;
@@ -42,6 +63,16 @@ public class Chatlog {
     private LogManager logManager;
     private LangManager langManager;
     private FilterReplaceConfig filterReplaceConfig;
+    private UserNameCache userNameCache;
+    private RecentMessages recentMessages;
+    private final RateLimiter rateLimiter = new RateLimiter();
+    private DuplicateDetector duplicateDetector;
+    private PunishmentScheduler punishmentScheduler;
+    private FilterExecutor filterExecutor;
+    private ConfigWatcher configWatcher;
+    private LogSearcher logSearcher;
+    private volatile CommandSet checkCommands = CommandSet.EMPTY;
+    private final AtomicBoolean reloading = new AtomicBoolean();
 
     @Inject
     public Chatlog(ProxyServer proxy, Logger logger, Metrics.Factory metricsFactory) {
@@ -69,7 +100,24 @@ public class Chatlog {
         filterManager = new FilterManager(logger, config);
         filterReplaceConfig = new FilterReplaceConfig(logger, pluginDir);
         filterManager.setReplaceConfig(filterReplaceConfig);
-        logManager = new LogManager(logger, pluginDir);
+        userNameCache = new UserNameCache(filterManager);
+        recentMessages = new RecentMessages(config.getViolationContextSize());
+        logManager = new LogManager(logger, pluginDir, config);
+        logSearcher = new LogSearcher(logger, config.getSearchThreads(),
+                config.getSearchTimeoutMillis(), config.getSearchMaxResults());
+        configureRateLimiter();
+        duplicateDetector = new DuplicateDetector(config.getDuplicateHistorySize(), config.getDuplicateWindowMillis(),
+                config.getDuplicateMaxRepeats(), config.getDuplicateSimilarityBits());
+
+        punishmentScheduler = new PunishmentScheduler(logger, config, this::executeConsoleCommand,
+                config.getPunishmentQueueSize());
+        if (config.isAsyncEvents()) {
+            filterExecutor = new FilterExecutor(logger, config.getFilterExecutor(),
+                    config.getFilterThreads(), config.getFilterQueueSize());
+        }
+
+        // bStats 自定义图表
+        addMetricsCharts(metrics);
 
         // 注册命令
         proxy.getCommandManager().register(
@@ -79,91 +127,487 @@ public class Chatlog {
                 new ReloadCommand(logger, this)
         );
 
+        // 解析要记录的命令及其别名；晚于本插件注册命令的插件在稍后再解析一次
+        rebuildCheckCommands();
+        proxy.getScheduler().buildTask(this, this::rebuildCheckCommands)
+                .delay(COMMAND_ALIAS_REFRESH_SECONDS, TimeUnit.SECONDS)
+                .schedule();
+
+        // 定期把被限流与重复检测拦截的消息汇总为一行日志
+        proxy.getScheduler().buildTask(this, () -> {
+                    logRateLimitSummary();
+                    logDuplicateSummary();
+                    punishmentScheduler.prune();
+                })
+                .repeat(SUPPRESSED_SUMMARY_SECONDS, TimeUnit.SECONDS)
+                .schedule();
+
+        // 监视过滤器文件，修改后自动重新编译
+        if (config.isHotReload()) {
+            configWatcher = new ConfigWatcher(logger, pluginDir.toPath(),
+                    Set.of(FILTER_FILE, FILTER_REPLACE_FILE), config.getHotReloadDebounceMillis(), this::reloadChangedFiles);
+            if (!configWatcher.start()) {
+                configWatcher = null;
+            }
+        }
+
         // 打印启动信息
         String logPath = logManager.getLogFilePath();
         logger.info(getMessage("plugin.startup", logPath));
     }
 
+    private void addMetricsCharts(Metrics metrics) {
+        // 折线图上报的是两次上报之间的增量
+        AtomicLong lastChecked = new AtomicLong();
+        AtomicLong lastBlocked = new AtomicLong();
+        metrics.addCustomChart(new SingleLineChart("messages_checked",
+                () -> (int) delta(lastChecked, filterManager.getCheckedCount())));
+        metrics.addCustomChart(new SingleLineChart("messages_blocked",
+                () -> (int) delta(lastBlocked, filterManager.getBlockedCount())));
+        metrics.addCustomChart(new SimplePie("filter_pattern_count",
+                () -> bucket(filterManager.getForbiddenMatcher().size(), 100, 1000, 10000)));
+        metrics.addCustomChart(new SimplePie("filter_latency_p99_us",
+                () -> bucket(filterManager.getCheckLatency().getPercentile(99) / 1000, 10, 100, 1000)));
+        metrics.addCustomChart(new SimplePie("async_log", () -> config.isAsyncLog() ? "enabled" : "disabled"));
+    }
+
+    private static long delta(AtomicLong last, long current) {
+        return current - last.getAndSet(current);
+    }
+
+    private static String bucket(long value, long... bounds) {
+        long lower = 0;
+        for (long bound : bounds) {
+            if (value < bound) {
+                return lower + "-" + (bound - 1);
+            }
+            lower = bound;
+        }
+        return lower + "+";
+    }
+
+    public FilterManager getFilterManager() {
+        return filterManager;
+    }
+
+    public LogManager getLogManager() {
+        return logManager;
+    }
+
+    public PunishmentScheduler getPunishmentScheduler() {
+        return punishmentScheduler;
+    }
+
+    public FilterExecutor getFilterExecutor() {
+        return filterExecutor;
+    }
+
+    public LogSearcher getLogSearcher() {
+        return logSearcher;
+    }
+
+    public ChatlogConfig getConfig() {
+        return config;
+    }
+
+    public File getPluginDir() {
+        return pluginDir;
+    }
+
+    /**
+     * 在调度器线程上执行耗时操作，不阻塞命令线程
+     *
+     * @param task 要执行的任务
+     */
+    public void runAsync(Runnable task) {
+        proxy.getScheduler().buildTask(this, task).schedule();
+    }
+
     public String getMessage(String key, Object... args) {
         return langManager.getMessage(key, args);
     }
 
     @Subscribe
     public void onProxyShutdown(ProxyShutdownEvent event) {
+        if (configWatcher != null) {
+            configWatcher.shutdown();
+        }
+        if (logSearcher != null) {
+            logSearcher.shutdown();
+        }
+        if (filterExecutor != null) {
+            filterExecutor.shutdown();
+        }
+        if (punishmentScheduler != null) {
+            punishmentScheduler.shutdown();
+        }
+        if (logManager != null) {
+            logManager.shutdown();
+        }
         logger.info(getMessage("plugin.shutdown"));
     }
 
     @Subscribe
-    public void onCommandExecute(CommandExecuteEvent event) {
+    public void onPostLogin(PostLoginEvent event) {
+        Player player = event.getPlayer();
+        // 最近消息与重复检测的记录只在登录时创建，断开连接后迟到的过滤任务不会再创建
+        recentMessages.track(player.getUniqueId());
+        duplicateDetector.track(player.getUniqueId(), player.getUsername());
+        // 登录时预先判定用户名，之后的聊天与命令直接使用缓存结果
+        if (config.isUserNameCheck()) {
+            userNameCache.isForbidden(player.getUniqueId(), player.getUsername());
+        }
+    }
+
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        userNameCache.evict(event.getPlayer().getUniqueId());
+        recentMessages.evict(event.getPlayer().getUniqueId());
+        // 下线前尚未汇总的拦截记录立即写出，刷屏后马上断开的玩家同样留下记录
+        RateLimiter.Dropped dropped = rateLimiter.evict(event.getPlayer().getUniqueId());
+        if (dropped != null) {
+            logRateLimited(dropped);
+        }
+        DuplicateDetector.Suppressed suppressed = duplicateDetector.evict(event.getPlayer().getUniqueId());
+        if (suppressed != null) {
+            logDuplicate(suppressed);
+        }
+    }
+
+    @Subscribe
+    public EventTask onCommandExecute(CommandExecuteEvent event) {
         CommandSource src = event.getCommandSource();
-        if (!(src instanceof Player player)) return;
+        if (!(src instanceof Player player)) return null;
 
         String playerName = player.getUsername();
-        if (config.isUserNameCheck() && filterManager.containsForbiddenWords(playerName)) {
-            String cmd = config.getUserNamePunishmentCommand().replace("%player%", playerName);
-            proxy.getCommandManager().executeAsync(proxy.getConsoleCommandSource(), cmd);
+        if (config.isUserNameCheck() && userNameCache.isForbidden(player.getUniqueId(), playerName)) {
+            String cmd = punishmentScheduler.punish(player.getUniqueId(), playerName, PunishmentScheduler.Type.USERNAME);
             event.setResult(CommandExecuteEvent.CommandResult.denied());
-            logger.info(getMessage("violation.username", playerName, cmd));
-            return;
+            if (cmd != null) {
+                logger.info(getMessage("violation.username", playerName, cmd));
+            }
+            return null;
+        }
+
+        // 只扫描出第一个词的位置，不截取子串也不转换大小写
+        String command = event.getCommand();
+        int length = command.length();
+        int start = 0;
+        while (start < length && Character.isWhitespace(command.charAt(start))) start++;
+        if (start < length && command.charAt(start) == '/') start++;
+        int end = start;
+        while (end < length && !Character.isWhitespace(command.charAt(end))) end++;
+        // 带命名空间的命令（如 essentials:msg）只比较冒号之后的部分
+        int nameStart = start;
+        for (int i = end - 1; i >= start; i--) {
+            if (command.charAt(i) == ':') {
+                nameStart = i + 1;
+                break;
+            }
         }
+        if (!checkCommands.contains(command, nameStart, end)) return null;
+
+        String serverName = player.getCurrentServer().map(s -> s.getServerInfo().getName()).orElse("<unknown>");
+        if (isRateLimited(player, serverName)) {
+            event.setResult(CommandExecuteEvent.CommandResult.denied());
+            return null;
+        }
+        String fullCommand = command.substring(start, length).trim();
+        String label = command.substring(start, end);
+        String args = command.substring(end).trim();
+        if (filterExecutor == null) {
+            filterCommand(event, player, serverName, fullCommand, label, args, SYNC_CLAIM);
+            return null;
+        }
+        return EventTask.resumeWhenComplete(filterExecutor.submit(
+                claim -> filterCommand(event, player, serverName, fullCommand, label, args, claim),
+                config.getFilterDeadlineMillis(), () -> {
+                    if (config.getFilterDeadlinePolicy() == RegexBudget.FailPolicy.CLOSED) {
+                        event.setResult(CommandExecuteEvent.CommandResult.denied());
+                        logger.warn("玩家 {} 的命令在期限内未完成过滤，已拦截: {}", playerName, fullCommand);
+                    } else {
+                        logManager.logCommand(serverName, playerName, fullCommand);
+                        recentMessages.record(player.getUniqueId(), serverName, fullCommand, true);
+                        logger.warn("玩家 {} 的命令在期限内未完成过滤，已放行: {}", playerName, fullCommand);
+                    }
+                }));
+    }
+
+    /**
+     * 检查命令参数并记录命令，启用 AsyncEvents 时在过滤线程上执行
+     *
+     * @param claim 修改事件前调用，返回 false 表示已超出期限并按策略处理
+     */
+    private void filterCommand(CommandExecuteEvent event, Player player, String serverName,
+                               String fullCommand, String label, String args, BooleanSupplier claim) {
+        String playerName = player.getUsername();
+        FilterManager.Result result = config.isCommandArgumentFilter() && !args.isEmpty()
+                ? filterManager.checkMessage(args) : null;
+        if (!claim.getAsBoolean()) return;
 
-        String fullCommand = event.getCommand().trim();
-        if (fullCommand.isEmpty()) return;
+        if (result != null && result.blocked()) {
+            // 先确定结果再写日志与处罚，写入再慢也不会让命令在拦截之前执行
+            event.setResult(CommandExecuteEvent.CommandResult.denied());
+            logManager.logWarning(serverName, playerName, fullCommand,
+                    recentMessages.snapshot(player.getUniqueId(), playerName));
+            recentMessages.record(player.getUniqueId(), serverName, fullCommand, true);
+            String cmd = punish(player, PunishmentScheduler.Type.CHAT);
+            logger.info(getMessage("violation.command", playerName, fullCommand, cmd));
+            return;
+        }
 
-        String cmdName = fullCommand.split(" ")[0];
-        if (config.getCheckCommands().contains(cmdName)) {
-            String serverName = player.getCurrentServer().map(s -> s.getServerInfo().getName()).orElse("<unknown>");
-            logManager.logCommand(serverName, playerName, fullCommand);
+        String replaced = result == null ? null : result.replaced();
+        if (replaced != null && !replaced.equals(args)) {
+            String replacedCommand = label + " " + replaced;
+            event.setResult(CommandExecuteEvent.CommandResult.command(replacedCommand));
+            logManager.logCommand(serverName, playerName, fullCommand + " -> " + replacedCommand);
+            recentMessages.record(player.getUniqueId(), serverName, fullCommand, true);
+            if (config.isNotifyReplacement()) {
+                notifyReplaced(player);
+            }
+            return;
         }
+        logManager.logCommand(serverName, playerName, fullCommand);
+        recentMessages.record(player.getUniqueId(), serverName, fullCommand, true);
     }
 
     @Subscribe
-    public void onPlayerChat(PlayerChatEvent event) {
+    public EventTask onPlayerChat(PlayerChatEvent event) {
         Player player = event.getPlayer();
         String playerName = player.getUsername();
         String message = event.getMessage();
         String serverName = player.getCurrentServer().map(s -> s.getServerInfo().getName()).orElse("<unknown>");
 
-        if (config.isUserNameCheck() && filterManager.containsForbiddenWords(playerName)) {
-            String cmd = config.getUserNamePunishmentCommand().replace("%player%", playerName);
-            proxy.getCommandManager().executeAsync(proxy.getConsoleCommandSource(), cmd);
+        // 超出频率的消息在过滤与写日志之前直接拦截
+        if (isRateLimited(player, serverName)) {
             event.setResult(PlayerChatEvent.ChatResult.denied());
-            logger.info(getMessage("violation.username", playerName, cmd));
-            return;
+            return null;
         }
 
-        if (filterManager.containsForbiddenWords(message)) {
-            logManager.logWarning(serverName, playerName, message);
-            String cmd = config.getPunishmentCommand().replace("%player%", playerName);
-            proxy.getCommandManager().executeAsync(proxy.getConsoleCommandSource(), cmd);
+        if (config.isUserNameCheck() && userNameCache.isForbidden(player.getUniqueId(), playerName)) {
+            String cmd = punishmentScheduler.punish(player.getUniqueId(), playerName, PunishmentScheduler.Type.USERNAME);
+            event.setResult(PlayerChatEvent.ChatResult.denied());
+            if (cmd != null) {
+                logger.info(getMessage("violation.username", playerName, cmd));
+            }
+            return null;
+        }
+
+        if (filterExecutor == null) {
+            filterChat(event, player, serverName, message, SYNC_CLAIM);
+            return null;
+        }
+        return EventTask.resumeWhenComplete(filterExecutor.submit(
+                claim -> filterChat(event, player, serverName, message, claim),
+                config.getFilterDeadlineMillis(), () -> {
+                    if (config.getFilterDeadlinePolicy() == RegexBudget.FailPolicy.CLOSED) {
+                        event.setResult(PlayerChatEvent.ChatResult.denied());
+                        logger.warn("玩家 {} 的消息在期限内未完成过滤，已拦截: {}", playerName, message);
+                    } else {
+                        logManager.logChat(serverName, playerName, message);
+                        recentMessages.record(player.getUniqueId(), serverName, message, false);
+                        logger.warn("玩家 {} 的消息在期限内未完成过滤，已放行: {}", playerName, message);
+                    }
+                }));
+    }
+
+    /**
+     * 过滤并记录聊天，启用 AsyncEvents 时在过滤线程上执行
+     *
+     * @param claim 修改事件前调用，返回 false 表示已超出期限并按策略处理
+     */
+    private void filterChat(PlayerChatEvent event, Player player, String serverName, String message,
+                            BooleanSupplier claim) {
+        String playerName = player.getUsername();
+        FilterManager.Result result = filterManager.checkMessage(message);
+        if (!claim.getAsBoolean()) return;
+
+        if (result.blocked()) {
+            // 先确定结果再写日志与处罚，写入再慢也不会让消息在拦截之前发出
             event.setResult(PlayerChatEvent.ChatResult.denied());
+            // 先写出违规前的上下文，再把这条违规消息放入最近消息
+            logManager.logWarning(serverName, playerName, message, recentMessages.snapshot(player.getUniqueId(), playerName));
+            recentMessages.record(player.getUniqueId(), serverName, message, false);
+            String cmd = punish(player, PunishmentScheduler.Type.CHAT);
             logger.info(getMessage("violation.chat", playerName, message, cmd));
             return;
         }
 
-        if (filterManager.hasReplaceConfig()) {
-            String replaced = filterManager.replaceFilteredWords(message);
-            if (replaced != null && !replaced.equals(message)) {
-                event.setResult(PlayerChatEvent.ChatResult.message(replaced));
-                logManager.logChat(serverName, playerName, message + " -> " + replaced);
-
-                if (config.isNotifyReplacement()) {
-                    Component notify = Component.text("[ChatLog] ", NamedTextColor.GOLD)
-                            .append(Component.text(langManager.getMessage("message.replaced"), NamedTextColor.YELLOW));
-                    player.sendMessage(notify);
+        // 过滤器放行后再判断重复：带违禁词的重复消息按违规处理，历史中也只有通过过滤的消息；
+        // 窗口内重复发送的消息不逐条写入日志，由 logDuplicateSummary 合并为一行
+        if (config.isDuplicateCheck()) {
+            DuplicateDetector.Verdict verdict = duplicateDetector.check(player.getUniqueId(), serverName, message);
+            if (verdict != DuplicateDetector.Verdict.ALLOWED) {
+                event.setResult(PlayerChatEvent.ChatResult.denied());
+                if (verdict == DuplicateDetector.Verdict.DUPLICATE) {
+                    notifyPlayer(player, "message.duplicate");
                 }
                 return;
             }
         }
 
+        String replaced = result.replaced();
+        if (replaced != null && !replaced.equals(message)) {
+            event.setResult(PlayerChatEvent.ChatResult.message(replaced));
+            logManager.logChat(serverName, playerName, message + " -> " + replaced);
+            recentMessages.record(player.getUniqueId(), serverName, message, false);
+
+            if (config.isNotifyReplacement()) {
+                notifyReplaced(player);
+            }
+            return;
+        }
+
         logManager.logChat(serverName, playerName, message);
+        recentMessages.record(player.getUniqueId(), serverName, message, false);
+    }
+
+    /**
+     * 判断玩家的这条消息是否超出频率；本周期内第一次被拦截时提示玩家，之后静默丢弃，
+     * 被拦截的条数由 {@link #logRateLimitSummary()} 汇总记录
+     */
+    private boolean isRateLimited(Player player, String serverName) {
+        if (!config.isRateLimit() || player.hasPermission(RATE_LIMIT_BYPASS_PERMISSION)) {
+            return false;
+        }
+        RateLimiter.Verdict verdict = rateLimiter.acquire(player.getUniqueId(), player.getUsername(), serverName);
+        if (verdict == RateLimiter.Verdict.LIMITED) {
+            notifyPlayer(player, "message.rate_limited");
+        }
+        return verdict != RateLimiter.Verdict.ALLOWED;
+    }
+
+    /**
+     * 把上一周期内被限流拦截的条数按玩家各写一行，而不是每条消息一行
+     */
+    private void logRateLimitSummary() {
+        for (RateLimiter.Dropped dropped : rateLimiter.drain()) {
+            logRateLimited(dropped);
+        }
+        long global = rateLimiter.drainGlobal();
+        if (global > 0) {
+            logger.info(getMessage("violation.rate_limited_global", SUPPRESSED_SUMMARY_SECONDS, global));
+        }
+    }
+
+    private void logRateLimited(RateLimiter.Dropped dropped) {
+        logManager.logWarning(dropped.serverName(), dropped.playerName(),
+                "[RATE_LIMIT] " + SUPPRESSED_SUMMARY_SECONDS + " 秒内 " + dropped.dropped() + " 条消息被拦截");
+        logger.info(getMessage("violation.rate_limited", dropped.playerName(),
+                SUPPRESSED_SUMMARY_SECONDS, dropped.dropped()));
+    }
+
+    /**
+     * 把被拦截的重复消息合并为 chat.log 中的一行，注明重复次数
+     */
+    private void logDuplicateSummary() {
+        for (DuplicateDetector.Suppressed suppressed : duplicateDetector.drain()) {
+            logDuplicate(suppressed);
+        }
+    }
+
+    private void logDuplicate(DuplicateDetector.Suppressed suppressed) {
+        logManager.logChat(suppressed.serverName(), suppressed.playerName(),
+                suppressed.content() + " [重复 x" + suppressed.repeats() + "，已拦截]");
+    }
+
+    /**
+     * 安排处罚，返回用于控制台提示的命令；窗口内已处罚过时说明本次未重复执行
+     */
+    private String punish(Player player, PunishmentScheduler.Type type) {
+        String cmd = punishmentScheduler.punish(player.getUniqueId(), player.getUsername(), type);
+        return cmd != null ? cmd : getMessage("violation.punishment_merged");
+    }
+
+    /**
+     * 以控制台身份执行处罚命令并等待完成，由 {@link PunishmentScheduler} 的执行线程调用
+     */
+    private void executeConsoleCommand(String cmd) {
+        proxy.getCommandManager().executeAsync(proxy.getConsoleCommandSource(), cmd)
+                .orTimeout(PUNISHMENT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .join();
+    }
+
+    private void configureRateLimiter() {
+        rateLimiter.configure(config.getRateLimitPerSecond(), config.getRateLimitBurst(),
+                config.getGlobalRateLimitPerSecond(), config.getGlobalRateLimitBurst());
+    }
+
+    private void notifyReplaced(Player player) {
+        notifyPlayer(player, "message.replaced");
+    }
+
+    private void notifyPlayer(Player player, String key) {
+        Component notify = Component.text("[ChatLog] ", NamedTextColor.GOLD)
+                .append(Component.text(langManager.getMessage(key), NamedTextColor.YELLOW));
+        player.sendMessage(notify);
+    }
+
+    /**
+     * 根据 CheckCommands 重新构建命令名集合。代理端注册的命令会通过 {@link CommandManager}
+     * 的元数据展开全部别名；后端服务器上的命令代理端看不到元数据，只按配置的名字匹配
+     */
+    private void rebuildCheckCommands() {
+        CommandManager commandManager = proxy.getCommandManager();
+        List<String> names = new ArrayList<>();
+        for (String name : config.getCheckCommands()) {
+            names.add(name);
+            CommandMeta meta = commandManager.getCommandMeta(CommandSet.normalize(name));
+            if (meta != null) {
+                names.addAll(meta.getAliases());
+            }
+        }
+        checkCommands = CommandSet.of(names);
     }
 
     public void reloadConfig() {
         langManager.loadLang();
         config.loadConfig();
-        filterManager.loadFilters();
         filterReplaceConfig.loadConfig();
+        // 违禁词与替换规则编译完成后一次性替换，聊天线程不会看到加载了一半的规则
+        filterManager.reload(filterReplaceConfig);
+        rebuildCheckCommands();
+        configureRateLimiter();
+        userNameCache.clear();
         logger.info(getMessage("plugin.reload"));
     }
+
+    /**
+     * 只重新编译发生变化的过滤器文件，由 {@link ConfigWatcher} 在监视线程上调用。
+     * 任意一行无法编译时保留当前生效的规则
+     *
+     * @param changed 变化过的文件名
+     */
+    private void reloadChangedFiles(Set<String> changed) {
+        if (changed.contains(FILTER_FILE) && filterManager.tryReloadFilters()) {
+            logger.info("检测到 {} 变化，已自动重新加载", FILTER_FILE);
+        }
+        if (changed.contains(FILTER_REPLACE_FILE) && filterReplaceConfig.tryLoadConfig()) {
+            filterManager.setReplaceConfig(filterReplaceConfig);
+            logger.info("检测到 {} 变化，已自动重新加载", FILTER_REPLACE_FILE);
+        }
+    }
+
+    /**
+     * 在调度器线程上重新加载配置，不阻塞命令与事件线程
+     *
+     * @param onComplete 重新加载完成后执行
+     * @return 已有重新加载在进行时返回false
+     */
+    public boolean reloadConfigAsync(Runnable onComplete) {
+        if (!reloading.compareAndSet(false, true)) {
+            return false;
+        }
+        proxy.getScheduler().buildTask(this, () -> {
+            try {
+                reloadConfig();
+                onComplete.run();
+            } catch (Exception e) {
+                logger.error("重新加载配置时发生错误", e);
+            } finally {
+                reloading.set(false);
+            }
+        }).schedule();
+        return true;
+    }
 }
@@ -10,8 +10,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 处理ChatLog插件的配置管理
@@ -21,12 +25,69 @@ public class ChatlogConfig {
     private final File configFile;
     private final File filterFile;
 
-    // 配置项
-    private String punishmentCommand;               // 聊天内容违禁词处罚命令
-    private List<String> checkCommands;             // 要检测并记录的命令名列表
-    private boolean userNameCheck;                  // 是否开启"用户名检测"
-    private String userNamePunishmentCommand;       // 用户名检测违规时执行的命令模板
-    private boolean notifyReplacement;              // 是否通知玩家消息被替换
+    private volatile Values values;   // 当前生效的配置快照，重新加载时整体替换
+
+    /**
+     * 一次加载得到的全部配置项，发布后不再修改
+     */
+    private static final class Values {
+        String punishmentCommand = "/tempmute %player% 10m 言语违规"; // 聊天内容违禁词处罚命令
+        List<String> checkCommands = List.of();         // 要检测并记录的命令名列表
+        boolean commandArgumentFilter = false;          // 是否用聊天过滤规则检查命令参数
+        boolean userNameCheck = false;                  // 是否开启"用户名检测"
+        String userNamePunishmentCommand = "kick %player% 用户名违规"; // 用户名检测违规时执行的命令模板
+        List<String> punishmentEscalation = List.of();  // 窗口外再次违规时依次使用的处罚命令
+        long punishmentWindowMillis = 10_000;           // 同一玩家同类违规只处罚一次的窗口（毫秒）
+        long punishmentEscalationResetMillis = 60L * 60 * 1000; // 多久没有违规后处罚等级归零（毫秒）
+        int punishmentQueueSize = 256;                  // 等待执行的处罚命令上限
+        boolean notifyReplacement = false;              // 是否通知玩家消息被替换
+        int violationContextSize = 5;                   // 违规时一并写入 warn.log 的最近消息条数
+        boolean rateLimit = false;                      // 是否限制聊天与命令的频率
+        int rateLimitPerSecond = 2;                     // 每名玩家每秒允许的条数
+        int rateLimitBurst = 5;                         // 每名玩家允许的突发条数
+        int globalRateLimitPerSecond = 0;               // 全服每秒允许的条数，0 表示不限
+        int globalRateLimitBurst = 50;                  // 全服允许的突发条数
+        boolean duplicateCheck = false;                 // 是否拦截重复与近似重复的聊天
+        long duplicateWindowMillis = 30_000;            // 判定重复的时间窗口（毫秒）
+        int duplicateMaxRepeats = 2;                    // 窗口内允许同一条消息出现的次数
+        int duplicateSimilarityBits = 8;                // SimHash 汉明距离阈值，0 表示只检测完全相同
+        int duplicateHistorySize = 8;                   // 每名玩家保留的指纹条数
+        boolean asyncLog = false;                       // 是否启用异步日志写入
+        int asyncLogQueueSize = 8192;                   // 异步日志队列容量
+        int asyncLogBatchSize = 256;                    // 累计多少条后刷盘
+        long asyncLogFlushIntervalMillis = 1000;        // 最长刷盘间隔（毫秒）
+        AsyncLogWriter.OverflowPolicy asyncLogOverflowPolicy = AsyncLogWriter.OverflowPolicy.BLOCK; // 队列满时的策略
+        ConsoleEcho.Mode consoleEcho = ConsoleEcho.Mode.FULL; // 聊天在控制台的回显策略
+        int consoleEchoSampleRate = 10;                 // 抽样回显时每多少条回显一条
+        int consoleEchoMaxPerSecond = 0;                // 抽样回显时每秒最多回显的条数，0 表示不限
+        boolean logRotateDaily = false;                 // 是否按天切分日志
+        long logRotateMaxBytes = 0;                     // 单个日志文件大小上限，0 表示不按大小切分
+        String logRotateFileName = "{name}-{date}.{index}.log"; // 归档文件命名模板
+        LogArchiver.Compression logCompression = LogArchiver.Compression.GZIP; // 归档文件压缩方式
+        int logRetentionDays = 0;                       // 归档保留天数，0 表示不限
+        int logMaxArchives = 0;                         // 最多保留的归档数，0 表示不限
+        boolean logPartitionByServer = false;           // 是否按后端服务器分别写入聊天日志
+        boolean databaseLog = false;                    // 是否同时写入嵌入式 H2 数据库
+        int databaseLogBatchSize = 500;                 // 数据库批量插入的条数
+        boolean binaryLog = false;                      // 是否同时写入带索引的二进制日志
+        long binaryLogSegmentBytes = 64L * 1024 * 1024; // 二进制日志单个段的大小上限
+        int searchThreads = 2;                          // /chatlog search 并行扫描的线程数
+        long searchTimeoutMillis = 10_000;              // 单次搜索的时间预算（毫秒）
+        int searchMaxResults = 500;                     // 单次搜索最多保留的结果数
+        boolean asyncEvents = false;                    // 是否在专用线程池上过滤聊天与命令
+        FilterExecutor.Mode filterExecutor = FilterExecutor.Mode.PLATFORM; // 过滤线程类型
+        int filterThreads = 2;                          // 过滤线程数
+        int filterQueueSize = 1024;                     // 等待过滤的任务上限
+        long filterDeadlineMillis = 200;                // 过滤期限（毫秒），0 表示不限
+        RegexBudget.FailPolicy filterDeadlinePolicy = RegexBudget.FailPolicy.OPEN; // 超出期限时的处理
+        boolean messageCache = false;                   // 是否缓存重复消息的判定结果
+        int messageCacheSize = 4096;                    // 消息判定缓存的最大条目数
+        boolean hotReload = false;                      // 是否监视过滤器文件并自动重新加载
+        long hotReloadDebounceMillis = 500;             // 文件静止多久后重新编译（毫秒）
+        long regexStepBudget = 0;                       // 单条正则的执行步数上限，0 表示不限
+        RegexBudget.FailPolicy regexBudgetPolicy = RegexBudget.FailPolicy.OPEN; // 超出预算时的处理
+        Set<TextNormalizer.Stage> normalizeStages = Set.of(); // 匹配前的规范化步骤，为空表示不规范化
+    }
 
     /**
      * 创建配置管理器
@@ -40,10 +101,7 @@ public class ChatlogConfig {
         this.filterFile = new File(pluginDir, "filter.yml");
 
         // 初始化默认值
-        this.punishmentCommand = "/tempmute %player% 10m 言语违规";
-        this.checkCommands = new ArrayList<>();
-        this.userNameCheck = false;
-        this.userNamePunishmentCommand = "kick %player% 用户名违规";
+        this.values = new Values();
 
         // 创建配置文件（如果不存在）
         createConfigIfNotExists();
@@ -68,6 +126,9 @@ public class ChatlogConfig {
                     + "  - 'hh'\n"
                     + "  - 'pc'\n"
                     + "  - 'f'\n"
+                    + "# 命令名不区分大小写，/MSG、/essentials:msg 以及 msg 的别名（如 /tell）都会被记录\n"
+                    + "# 是否用聊天的违禁词与替换规则检查以上命令的参数（如 /msg 的私聊内容）\n"
+                    + "CommandArgumentFilter: false\n"
                     + "\n"
                     + "# 新增：是否检测用户名，若为 true，则玩家发送聊天或命令时会先检查用户名是否含违禁词。\n"
                     + "UserNameCheck: true\n"
@@ -75,8 +136,138 @@ public class ChatlogConfig {
                     + "# 新增：用户名违规时执行的命令模板，%player% 会被替换为实际玩家名\n"
                     + "UserName-punishment-command: \"kick %player% 您的用户名包含违禁词请更换用户名\"\n"
                     + "\n"
+                    + "# 新增：同一玩家同类违规在多少秒内只执行一次处罚命令，其余违规照常记录到 warn.log\n"
+                    + "PunishmentWindowSeconds: 10\n"
+                    + "# 窗口外再次违规时依次加重的处罚命令，第一次违规仍使用 punishment-command，超出列表时重复最后一条\n"
+                    + "punishment-escalation:\n"
+                    + "  - '/tempmute %player% 1h 多次言语违规'\n"
+                    + "  - '/tempmute %player% 1d 屡次言语违规'\n"
+                    + "# 多少分钟没有违规后处罚等级归零\n"
+                    + "PunishmentEscalationResetMinutes: 60\n"
+                    + "# 等待执行的处罚命令上限，超出时丢弃（修改后需重启生效）\n"
+                    + "PunishmentQueueSize: 256\n"
+                    + "\n"
                     + "# 新增：是否通知玩家消息被替换\n"
-                    + "NotifyReplacement: true\n";
+                    + "NotifyReplacement: true\n"
+                    + "\n"
+                    + "# 新增：违规时在 warn.log 中一并写入该玩家最近的多少条聊天与命令（标记为 [CONTEXT]），0 表示不写入（修改后需重启生效）\n"
+                    + "ViolationContextSize: 5\n"
+                    + "\n"
+                    + "# 新增：限制聊天与以上命令的频率，超出的消息在过滤与写日志之前直接拦截，\n"
+                    + "# 被拦截的条数每 10 秒汇总为一行写入 warn.log；拥有 chatlog.bypass.ratelimit 权限的玩家不受限制\n"
+                    + "RateLimit: true\n"
+                    + "# 每名玩家每秒允许发送的条数\n"
+                    + "RateLimitPerSecond: 2\n"
+                    + "# 每名玩家允许连续发送的条数（突发）\n"
+                    + "RateLimitBurst: 5\n"
+                    + "# 全服每秒允许的总条数，0 表示不限\n"
+                    + "GlobalRateLimitPerSecond: 0\n"
+                    + "# 全服允许连续发送的总条数（突发）\n"
+                    + "GlobalRateLimitBurst: 50\n"
+                    + "\n"
+                    + "# 新增：拦截重复与近似重复的聊天（忽略大小写、空白与标点，改动个别字符的广告也视为重复），修改后需重启生效\n"
+                    + "# 重复消息同样先经过过滤器，带违禁词的照常记入 warn.log；其余被拦截的每 10 秒在 chat.log 中合并为一行并注明重复次数\n"
+                    + "DuplicateCheck: true\n"
+                    + "# 判定重复的时间窗口（秒）\n"
+                    + "DuplicateWindowSeconds: 30\n"
+                    + "# 窗口内允许同一条消息发送的次数，超出的被拦截\n"
+                    + "DuplicateMaxRepeats: 2\n"
+                    + "# 近似程度（SimHash 指纹不同的位数，0~64），越大越容易判为重复，0 表示只拦截完全相同的消息\n"
+                    + "DuplicateSimilarityBits: 8\n"
+                    + "# 每名玩家保留最近多少条消息的指纹用于比较\n"
+                    + "DuplicateHistorySize: 8\n"
+                    + "\n"
+                    + "# 新增：是否启用异步日志写入（由单独线程批量写入，修改后需重启生效）\n"
+                    + "AsyncLog: true\n"
+                    + "# 异步日志队列容量\n"
+                    + "AsyncLogQueueSize: 8192\n"
+                    + "# 累计多少条日志后刷盘\n"
+                    + "AsyncLogBatchSize: 256\n"
+                    + "# 最长刷盘间隔（毫秒）\n"
+                    + "AsyncLogFlushIntervalMs: 1000\n"
+                    + "# 队列满时的策略：BLOCK（等待空位）、DROP_OLDEST（丢弃最旧）、SPILL（溢出到内存缓冲区）\n"
+                    + "AsyncLogOverflowPolicy: BLOCK\n"
+                    + "\n"
+                    + "# 新增：聊天在控制台的回显策略（修改后需重启生效），违规提示始终输出\n"
+                    + "# FULL（每条都回显）、ASYNC（由异步日志线程回显，需开启 AsyncLog）、SAMPLED（抽样回显）、OFF（只输出违规）\n"
+                    + "ConsoleEcho: FULL\n"
+                    + "# SAMPLED 时每多少条聊天回显一条\n"
+                    + "ConsoleEchoSampleRate: 10\n"
+                    + "# SAMPLED 时每秒最多回显多少条，0 表示不限\n"
+                    + "ConsoleEchoMaxPerSecond: 0\n"
+                    + "\n"
+                    + "# 新增：日志轮转，是否按天切分 chat.log 与 warn.log（修改后需重启生效）\n"
+                    + "LogRotateDaily: true\n"
+                    + "# 单个日志文件达到多少 MB 时切分，0 表示不按大小切分\n"
+                    + "LogRotateMaxSizeMb: 64\n"
+                    + "# 归档文件命名，{name} 为 chat 或 warn，{date} 为日期，{index} 为当天序号\n"
+                    + "LogRotateFileName: \"{name}-{date}.{index}.log\"\n"
+                    + "# 归档文件压缩方式：GZIP 或 NONE\n"
+                    + "LogCompression: GZIP\n"
+                    + "# 归档保留天数，0 表示不按天数清理\n"
+                    + "LogRetentionDays: 30\n"
+                    + "# chat 与 warn 各自最多保留多少个归档，0 表示不限制\n"
+                    + "LogMaxArchives: 0\n"
+                    + "\n"
+                    + "# 新增：按后端服务器把聊天与命令分别写入 chat-<服务器>.log，各自缓冲、并行刷盘（修改后需重启生效）\n"
+                    + "# warn.log 不分区；可用 /chatlog convert merge 按时间合并为 merged-chat.log\n"
+                    + "LogPartitionByServer: false\n"
+                    + "\n"
+                    + "# 新增：在 binlog 目录同时写入带时间与玩家索引的二进制日志，便于按玩家和时间段查询（修改后需重启生效）\n"
+                    + "# 可用 /chatlog convert 在文本日志与二进制日志之间转换\n"
+                    + "BinaryLog: false\n"
+                    + "# 二进制日志单个段的大小上限（MB）\n"
+                    + "BinaryLogSegmentMb: 64\n"
+                    + "\n"
+                    + "# 新增：同时把日志写入插件目录下的 H2 数据库 chatlog.mv.db（表 chat_log，按时间、玩家、服务器建有索引），修改后需重启生效\n"
+                    + "# 建议配合 AsyncLog 使用，由写入线程批量插入；数据库不开放网络连接，用户 chatlog，密码见 chatlog.key\n"
+                    + "DatabaseLog: false\n"
+                    + "# 累计多少条记录执行一次批量插入\n"
+                    + "DatabaseLogBatchSize: 500\n"
+                    + "\n"
+                    + "# 新增：/chatlog search 并行扫描日志的线程数（修改后需重启生效）\n"
+                    + "SearchThreads: 2\n"
+                    + "# 单次搜索的时间预算（毫秒），超时后返回已找到的部分\n"
+                    + "SearchTimeoutMs: 10000\n"
+                    + "# 单次搜索最多保留的结果数\n"
+                    + "SearchMaxResults: 500\n"
+                    + "\n"
+                    + "# 新增：在专用线程池上过滤聊天与命令并写日志，不占用网络与事件线程（修改后需重启生效，FilterDeadline 两项除外）\n"
+                    + "AsyncEvents: true\n"
+                    + "# 过滤线程类型：PLATFORM（固定数量的线程）或 VIRTUAL（虚拟线程，需要 Java 21，否则退回 PLATFORM）\n"
+                    + "FilterExecutor: PLATFORM\n"
+                    + "# PLATFORM 时的线程数\n"
+                    + "FilterThreads: 2\n"
+                    + "# 等待过滤的消息上限，超出时在事件线程上同步过滤\n"
+                    + "FilterQueueSize: 1024\n"
+                    + "# 一条消息最多等待过滤多少毫秒，0 表示不限\n"
+                    + "FilterDeadlineMs: 200\n"
+                    + "# 超出期限时的处理：OPEN（放行并照常记录）或 CLOSED（拦截）\n"
+                    + "FilterDeadlinePolicy: OPEN\n"
+                    + "\n"
+                    + "# 新增：缓存重复消息的过滤结果，刷屏与常用短语无需重复扫描\n"
+                    + "MessageCache: true\n"
+                    + "# 消息判定缓存的最大条目数\n"
+                    + "MessageCacheSize: 4096\n"
+                    + "\n"
+                    + "# 新增：监视 filter.yml 与 filter_replace.yml，修改后自动在后台重新编译（修改后需重启生效）\n"
+                    + "HotReload: true\n"
+                    + "# 连续修改时等待文件静止多少毫秒后再重新编译\n"
+                    + "HotReloadDebounceMs: 500\n"
+                    + "\n"
+                    + "# 新增：单条正则在一条消息上最多读取多少次字符，超出即中止，防止灾难性回溯卡住事件线程，0 表示不限\n"
+                    + "RegexStepBudget: 100000\n"
+                    + "# 超出预算时的处理：OPEN（视为未命中，放行）或 CLOSED（视为命中违禁词）\n"
+                    + "RegexBudgetPolicy: OPEN\n"
+                    + "\n"
+                    + "# 新增：匹配前对消息做的规范化步骤，违禁词可以只写普通的字面量\n"
+                    + "# NFKC（全角还原）、CASE（小写）、HOMOGLYPH（西里尔/希腊形近字）、LEET（4->a、$->s 等）、\n"
+                    + "# SEPARATOR（去除标点与零宽字符，b.a.d / b a d -> bad）、CUSTOM（normalize.yml 自定义映射，如繁简转换）\n"
+                    + "# 字面量规则会按同样的步骤规范化；正则规则面对的是规范化后的文本\n"
+                    + "Normalize:\n"
+                    + "  - NFKC\n"
+                    + "  - CASE\n"
+                    + "  - HOMOGLYPH\n";
             try {
                 Files.write(configFile.toPath(), defaultConfig.getBytes());
                 logger.info("已生成默认 config.yml，请根据需求修改各项配置");
@@ -113,59 +304,199 @@ public class ChatlogConfig {
         Yaml yaml = new Yaml(new SafeConstructor());
         try (InputStream in = new FileInputStream(configFile)) {
             Map<String, Object> data = yaml.load(in);
+            Values v = new Values();
 
             // 1. 原有：读取 punishment-command
             Object cmdObj = data.get("punishment-command");
             if (cmdObj != null) {
-                punishmentCommand = cmdObj.toString().trim();
-                logger.info("已加载 punishment-command: {}", punishmentCommand);
+                v.punishmentCommand = cmdObj.toString().trim();
+                logger.info("已加载 punishment-command: {}", v.punishmentCommand);
             } else {
-                punishmentCommand = "/tempmute %player% 10m 言语违规";
-                logger.warn("config.yml 中未找到 punishment-command，使用默认: {}", punishmentCommand);
+                v.punishmentCommand = "/tempmute %player% 10m 言语违规";
+                logger.warn("config.yml 中未找到 punishment-command，使用默认: {}", v.punishmentCommand);
             }
 
             // 2. 新增：读取 CheckCommands 列表
             Object checkCmdsObj = data.get("CheckCommands");
-            checkCommands = new ArrayList<>();
             if (checkCmdsObj instanceof List) {
+                List<String> commands = new ArrayList<>();
                 for (Object o : (List<Object>) checkCmdsObj) {
-                    checkCommands.add(o.toString().trim());
+                    commands.add(o.toString().trim());
                 }
-                logger.info("已加载 CheckCommands，命令数: {}", checkCommands.size());
+                v.checkCommands = List.copyOf(commands);
+                logger.info("已加载 CheckCommands，命令数: {}", v.checkCommands.size());
             } else {
                 logger.warn("config.yml 中未找到 CheckCommands，默认不检测任何命令");
             }
 
+            v.commandArgumentFilter = getBoolean(data, "CommandArgumentFilter", false);
+
             // 3. 新增：读取 UserNameCheck
             Object unameCheckObj = data.get("UserNameCheck");
             if (unameCheckObj != null) {
-                userNameCheck = Boolean.parseBoolean(unameCheckObj.toString());
+                v.userNameCheck = Boolean.parseBoolean(unameCheckObj.toString());
             } else {
-                userNameCheck = false;
+                v.userNameCheck = false;
                 logger.warn("config.yml 中未找到 UserNameCheck，默认不检测用户名");
             }
-            logger.info("UserNameCheck: {}", userNameCheck);
+            logger.info("UserNameCheck: {}", v.userNameCheck);
+
+            // 读取 NotifyReplacement
+            v.notifyReplacement = getBoolean(data, "NotifyReplacement", false);
+            v.violationContextSize = getInt(data, "ViolationContextSize", 5);
+
+            // 12. 新增：读取频率限制配置
+            v.rateLimit = getBoolean(data, "RateLimit", false);
+            v.rateLimitPerSecond = getInt(data, "RateLimitPerSecond", 2);
+            v.rateLimitBurst = getInt(data, "RateLimitBurst", 5);
+            v.globalRateLimitPerSecond = getInt(data, "GlobalRateLimitPerSecond", 0);
+            v.globalRateLimitBurst = getInt(data, "GlobalRateLimitBurst", 50);
+
+            // 13. 新增：读取重复消息检测配置
+            v.duplicateCheck = getBoolean(data, "DuplicateCheck", false);
+            v.duplicateWindowMillis = getInt(data, "DuplicateWindowSeconds", 30) * 1000L;
+            v.duplicateMaxRepeats = getInt(data, "DuplicateMaxRepeats", 2);
+            v.duplicateSimilarityBits = getInt(data, "DuplicateSimilarityBits", 8);
+            v.duplicateHistorySize = getInt(data, "DuplicateHistorySize", 8);
 
             // 4. 新增：读取 UserName-punishment-command
             Object unamePunishObj = data.get("UserName-punishment-command");
             if (unamePunishObj != null) {
-                userNamePunishmentCommand = unamePunishObj.toString().trim();
-                logger.info("已加载 UserName-punishment-command: {}", userNamePunishmentCommand);
+                v.userNamePunishmentCommand = unamePunishObj.toString().trim();
+                logger.info("已加载 UserName-punishment-command: {}", v.userNamePunishmentCommand);
             } else {
-                userNamePunishmentCommand = "kick %player% 用户名违规";
-                logger.warn("config.yml 中未找到 UserName-punishment-command，使用默认: {}", userNamePunishmentCommand);
+                v.userNamePunishmentCommand = "kick %player% 用户名违规";
+                logger.warn("config.yml 中未找到 UserName-punishment-command，使用默认: {}", v.userNamePunishmentCommand);
+            }
+
+            // 14. 新增：读取处罚调度配置
+            Object escalationObj = data.get("punishment-escalation");
+            if (escalationObj instanceof List) {
+                List<String> escalation = new ArrayList<>();
+                for (Object o : (List<Object>) escalationObj) {
+                    escalation.add(o.toString().trim());
+                }
+                v.punishmentEscalation = List.copyOf(escalation);
+            }
+            v.punishmentWindowMillis = getInt(data, "PunishmentWindowSeconds", 10) * 1000L;
+            v.punishmentEscalationResetMillis = Math.max(1, getInt(data, "PunishmentEscalationResetMinutes", 60)) * 60_000L;
+            v.punishmentQueueSize = getInt(data, "PunishmentQueueSize", 256);
+
+            // 5. 新增：读取异步日志配置
+            v.asyncLog = getBoolean(data, "AsyncLog", false);
+            v.asyncLogQueueSize = getInt(data, "AsyncLogQueueSize", 8192);
+            v.asyncLogBatchSize = getInt(data, "AsyncLogBatchSize", 256);
+            v.asyncLogFlushIntervalMillis = getInt(data, "AsyncLogFlushIntervalMs", 1000);
+            v.asyncLogOverflowPolicy = getEnum(data, "AsyncLogOverflowPolicy",
+                    AsyncLogWriter.OverflowPolicy.class, AsyncLogWriter.OverflowPolicy.BLOCK);
+            logger.info("AsyncLog: {}", v.asyncLog);
+            v.consoleEcho = getEnum(data, "ConsoleEcho", ConsoleEcho.Mode.class, ConsoleEcho.Mode.FULL);
+            v.consoleEchoSampleRate = getInt(data, "ConsoleEchoSampleRate", 10);
+            v.consoleEchoMaxPerSecond = getInt(data, "ConsoleEchoMaxPerSecond", 0);
+
+            // 6. 新增：读取日志轮转配置
+            v.logRotateDaily = getBoolean(data, "LogRotateDaily", false);
+            v.logRotateMaxBytes = getInt(data, "LogRotateMaxSizeMb", 0) * 1024L * 1024L;
+            v.logRotateFileName = getString(data, "LogRotateFileName", "{name}-{date}.{index}.log");
+            if (!v.logRotateFileName.contains("{name}")) {
+                logger.warn("LogRotateFileName 中缺少 {name}，chat 与 warn 的归档会互相覆盖，已自动添加前缀");
+                v.logRotateFileName = "{name}-" + v.logRotateFileName;
+            }
+            v.logCompression = getEnum(data, "LogCompression", LogArchiver.Compression.class, LogArchiver.Compression.GZIP);
+            v.logRetentionDays = getInt(data, "LogRetentionDays", 0);
+            v.logMaxArchives = getInt(data, "LogMaxArchives", 0);
+            v.logPartitionByServer = getBoolean(data, "LogPartitionByServer", false);
+            v.databaseLog = getBoolean(data, "DatabaseLog", false);
+            v.databaseLogBatchSize = getInt(data, "DatabaseLogBatchSize", 500);
+            v.binaryLog = getBoolean(data, "BinaryLog", false);
+            v.binaryLogSegmentBytes = getInt(data, "BinaryLogSegmentMb", 64) * 1024L * 1024L;
+
+            // 11. 新增：读取日志搜索配置
+            v.searchThreads = getInt(data, "SearchThreads", 2);
+            v.searchTimeoutMillis = getInt(data, "SearchTimeoutMs", 10_000);
+            v.searchMaxResults = getInt(data, "SearchMaxResults", 500);
+
+            // 15. 新增：读取异步过滤配置
+            v.asyncEvents = getBoolean(data, "AsyncEvents", false);
+            v.filterExecutor = getEnum(data, "FilterExecutor", FilterExecutor.Mode.class, FilterExecutor.Mode.PLATFORM);
+            v.filterThreads = getInt(data, "FilterThreads", 2);
+            v.filterQueueSize = getInt(data, "FilterQueueSize", 1024);
+            v.filterDeadlineMillis = getInt(data, "FilterDeadlineMs", 200);
+            v.filterDeadlinePolicy = getEnum(data, "FilterDeadlinePolicy",
+                    RegexBudget.FailPolicy.class, RegexBudget.FailPolicy.OPEN);
+
+            // 7. 新增：读取消息判定缓存配置
+            v.messageCache = getBoolean(data, "MessageCache", false);
+            v.messageCacheSize = getInt(data, "MessageCacheSize", 4096);
+
+            // 8. 新增：读取热重载配置
+            v.hotReload = getBoolean(data, "HotReload", false);
+            v.hotReloadDebounceMillis = getInt(data, "HotReloadDebounceMs", 500);
+
+            // 9. 新增：读取正则执行预算
+            v.regexStepBudget = getInt(data, "RegexStepBudget", 0);
+            v.regexBudgetPolicy = getEnum(data, "RegexBudgetPolicy",
+                    RegexBudget.FailPolicy.class, RegexBudget.FailPolicy.OPEN);
+
+            // 10. 新增：读取消息规范化步骤
+            Object normalizeObj = data.get("Normalize");
+            if (normalizeObj instanceof List) {
+                Set<TextNormalizer.Stage> stages = EnumSet.noneOf(TextNormalizer.Stage.class);
+                for (Object o : (List<Object>) normalizeObj) {
+                    try {
+                        stages.add(TextNormalizer.Stage.valueOf(o.toString().trim().toUpperCase(Locale.ROOT)));
+                    } catch (IllegalArgumentException e) {
+                        logger.warn("config.yml 中 Normalize 的步骤无效: {}，跳过", o);
+                    }
+                }
+                v.normalizeStages = Collections.unmodifiableSet(stages);
             }
 
+            // 全部读取完成后一次性发布，事件线程不会看到加载了一半的配置
+            values = v;
         } catch (IOException e) {
             // 若读取失败，则使用默认值
-            punishmentCommand = "/tempmute %player% 10m 言语违规";
-            checkCommands = new ArrayList<>();
-            userNameCheck = false;
-            userNamePunishmentCommand = "kick %player% 用户名违规";
+            values = new Values();
             logger.error("读取 config.yml 时发生错误，使用默认配置", e);
         }
     }
 
+    private String getString(Map<String, Object> data, String key, String def) {
+        Object value = data.get(key);
+        return value != null ? value.toString().trim() : def;
+    }
+
+    private boolean getBoolean(Map<String, Object> data, String key, boolean def) {
+        Object value = data.get(key);
+        return value != null ? Boolean.parseBoolean(value.toString().trim()) : def;
+    }
+
+    private int getInt(Map<String, Object> data, String key, int def) {
+        Object value = data.get(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("config.yml 中 {} 不是有效的整数: {}，使用默认: {}", key, value, def);
+            return def;
+        }
+    }
+
+    private <E extends Enum<E>> E getEnum(Map<String, Object> data, String key, Class<E> type, E def) {
+        Object value = data.get(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Enum.valueOf(type, value.toString().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("config.yml 中 {} 的取值无效: {}，使用默认: {}", key, value, def);
+            return def;
+        }
+    }
+
     /**
      * 获取过滤器文件
      * @return 过滤器文件
@@ -179,15 +510,23 @@ public class ChatlogConfig {
      * @return 处罚命令
      */
     public String getPunishmentCommand() {
-        return punishmentCommand;
+        return values.punishmentCommand;
     }
 
     /**
      * 获取要检测并记录的命令名列表
-     * @return 命令名列表
+     * @return 不可修改的命令名列表
      */
     public List<String> getCheckCommands() {
-        return checkCommands;
+        return values.checkCommands;
+    }
+
+    /**
+     * 是否用聊天过滤规则检查命令参数
+     * @return 是否检查
+     */
+    public boolean isCommandArgumentFilter() {
+        return values.commandArgumentFilter;
     }
 
     /**
@@ -195,7 +534,7 @@ public class ChatlogConfig {
      * @return 是否开启
      */
     public boolean isUserNameCheck() {
-        return userNameCheck;
+        return values.userNameCheck;
     }
 
     /**
@@ -203,10 +542,410 @@ public class ChatlogConfig {
      * @return 命令模板
      */
     public String getUserNamePunishmentCommand() {
-        return userNamePunishmentCommand;
+        return values.userNamePunishmentCommand;
+    }
+
+    /**
+     * 获取窗口外再次违规时依次使用的处罚命令
+     * @return 命令模板列表，为空表示不加重
+     */
+    public List<String> getPunishmentEscalation() {
+        return values.punishmentEscalation;
+    }
+
+    /**
+     * 获取同一玩家同类违规只处罚一次的窗口
+     * @return 毫秒
+     */
+    public long getPunishmentWindowMillis() {
+        return values.punishmentWindowMillis;
+    }
+
+    /**
+     * 获取多久没有违规后处罚等级归零
+     * @return 毫秒
+     */
+    public long getPunishmentEscalationResetMillis() {
+        return values.punishmentEscalationResetMillis;
+    }
+
+    /**
+     * 获取等待执行的处罚命令上限
+     * @return 条数
+     */
+    public int getPunishmentQueueSize() {
+        return values.punishmentQueueSize;
     }
 
     public boolean isNotifyReplacement() {
-        return notifyReplacement;
+        return values.notifyReplacement;
+    }
+
+    /**
+     * 获取违规时一并写入的最近消息条数
+     * @return 条数，0 表示不写入
+     */
+    public int getViolationContextSize() {
+        return values.violationContextSize;
+    }
+
+    /**
+     * 是否限制聊天与命令的频率
+     * @return 是否限制
+     */
+    public boolean isRateLimit() {
+        return values.rateLimit;
+    }
+
+    /**
+     * 获取每名玩家每秒允许的条数
+     * @return 条数
+     */
+    public int getRateLimitPerSecond() {
+        return values.rateLimitPerSecond;
+    }
+
+    /**
+     * 获取每名玩家允许的突发条数
+     * @return 条数
+     */
+    public int getRateLimitBurst() {
+        return values.rateLimitBurst;
+    }
+
+    /**
+     * 获取全服每秒允许的条数
+     * @return 条数，0 表示不限
+     */
+    public int getGlobalRateLimitPerSecond() {
+        return values.globalRateLimitPerSecond;
+    }
+
+    /**
+     * 获取全服允许的突发条数
+     * @return 条数
+     */
+    public int getGlobalRateLimitBurst() {
+        return values.globalRateLimitBurst;
+    }
+
+    /**
+     * 是否拦截重复与近似重复的聊天
+     * @return 是否拦截
+     */
+    public boolean isDuplicateCheck() {
+        return values.duplicateCheck;
+    }
+
+    /**
+     * 获取判定重复的时间窗口
+     * @return 毫秒
+     */
+    public long getDuplicateWindowMillis() {
+        return values.duplicateWindowMillis;
+    }
+
+    /**
+     * 获取窗口内允许同一条消息出现的次数
+     * @return 次数
+     */
+    public int getDuplicateMaxRepeats() {
+        return values.duplicateMaxRepeats;
+    }
+
+    /**
+     * 获取近似重复的 SimHash 汉明距离阈值
+     * @return 位数，0 表示只检测完全相同的消息
+     */
+    public int getDuplicateSimilarityBits() {
+        return values.duplicateSimilarityBits;
+    }
+
+    /**
+     * 获取每名玩家保留的指纹条数
+     * @return 条数
+     */
+    public int getDuplicateHistorySize() {
+        return values.duplicateHistorySize;
+    }
+
+    /**
+     * 是否启用异步日志写入
+     * @return 是否启用
+     */
+    public boolean isAsyncLog() {
+        return values.asyncLog;
+    }
+
+    /**
+     * 获取异步日志队列容量
+     * @return 队列容量
+     */
+    public int getAsyncLogQueueSize() {
+        return values.asyncLogQueueSize;
+    }
+
+    /**
+     * 获取批量刷盘的条数阈值
+     * @return 条数阈值
+     */
+    public int getAsyncLogBatchSize() {
+        return values.asyncLogBatchSize;
+    }
+
+    /**
+     * 获取最长刷盘间隔
+     * @return 刷盘间隔（毫秒）
+     */
+    public long getAsyncLogFlushIntervalMillis() {
+        return values.asyncLogFlushIntervalMillis;
+    }
+
+    /**
+     * 获取异步日志队列满时的策略
+     * @return 溢出策略
+     */
+    public AsyncLogWriter.OverflowPolicy getAsyncLogOverflowPolicy() {
+        return values.asyncLogOverflowPolicy;
+    }
+
+    /**
+     * 获取聊天在控制台的回显策略
+     * @return 回显策略
+     */
+    public ConsoleEcho.Mode getConsoleEcho() {
+        return values.consoleEcho;
+    }
+
+    /**
+     * 获取抽样回显时每多少条回显一条
+     * @return 抽样间隔
+     */
+    public int getConsoleEchoSampleRate() {
+        return values.consoleEchoSampleRate;
+    }
+
+    /**
+     * 获取抽样回显时每秒最多回显的条数
+     * @return 条数，0 表示不限
+     */
+    public int getConsoleEchoMaxPerSecond() {
+        return values.consoleEchoMaxPerSecond;
+    }
+
+    /**
+     * 是否按天切分日志
+     * @return 是否按天切分
+     */
+    public boolean isLogRotateDaily() {
+        return values.logRotateDaily;
+    }
+
+    /**
+     * 获取单个日志文件的大小上限
+     * @return 字节数，0 表示不按大小切分
+     */
+    public long getLogRotateMaxBytes() {
+        return values.logRotateMaxBytes;
+    }
+
+    /**
+     * 获取归档文件命名模板
+     * @return 命名模板
+     */
+    public String getLogRotateFileName() {
+        return values.logRotateFileName;
+    }
+
+    /**
+     * 获取归档文件压缩方式
+     * @return 压缩方式
+     */
+    public LogArchiver.Compression getLogCompression() {
+        return values.logCompression;
+    }
+
+    /**
+     * 获取归档保留天数
+     * @return 天数，0 表示不限
+     */
+    public int getLogRetentionDays() {
+        return values.logRetentionDays;
+    }
+
+    /**
+     * 获取每种日志最多保留的归档数
+     * @return 归档数，0 表示不限
+     */
+    public int getLogMaxArchives() {
+        return values.logMaxArchives;
+    }
+
+    /**
+     * 是否同时写入二进制日志
+     * @return 是否写入
+     */
+    public boolean isBinaryLog() {
+        return values.binaryLog;
+    }
+
+    /**
+     * 获取二进制日志单个段的大小上限
+     * @return 字节数
+     */
+    public long getBinaryLogSegmentBytes() {
+        return values.binaryLogSegmentBytes;
+    }
+
+    /**
+     * 获取日志搜索的并行线程数
+     * @return 线程数
+     */
+    public int getSearchThreads() {
+        return values.searchThreads;
+    }
+
+    /**
+     * 获取单次日志搜索的时间预算
+     * @return 毫秒
+     */
+    public long getSearchTimeoutMillis() {
+        return values.searchTimeoutMillis;
+    }
+
+    /**
+     * 获取单次日志搜索最多保留的结果数
+     * @return 结果数
+     */
+    public int getSearchMaxResults() {
+        return values.searchMaxResults;
+    }
+
+    /**
+     * 是否按后端服务器分别写入聊天日志
+     * @return 是否分区
+     */
+    public boolean isLogPartitionByServer() {
+        return values.logPartitionByServer;
+    }
+
+    /**
+     * 是否同时写入嵌入式数据库
+     * @return 是否启用
+     */
+    public boolean isDatabaseLog() {
+        return values.databaseLog;
+    }
+
+    /**
+     * 获取数据库批量插入的条数
+     * @return 条数
+     */
+    public int getDatabaseLogBatchSize() {
+        return values.databaseLogBatchSize;
+    }
+
+    /**
+     * 是否在专用线程池上过滤聊天与命令
+     * @return 是否启用
+     */
+    public boolean isAsyncEvents() {
+        return values.asyncEvents;
+    }
+
+    /**
+     * 获取过滤线程类型
+     * @return 线程类型
+     */
+    public FilterExecutor.Mode getFilterExecutor() {
+        return values.filterExecutor;
+    }
+
+    /**
+     * 获取过滤线程数
+     * @return 线程数
+     */
+    public int getFilterThreads() {
+        return values.filterThreads;
+    }
+
+    /**
+     * 获取等待过滤的任务上限
+     * @return 任务数
+     */
+    public int getFilterQueueSize() {
+        return values.filterQueueSize;
+    }
+
+    /**
+     * 获取一条消息的过滤期限
+     * @return 毫秒，0 表示不限
+     */
+    public long getFilterDeadlineMillis() {
+        return values.filterDeadlineMillis;
+    }
+
+    /**
+     * 获取超出过滤期限时的处理
+     * @return 处理策略
+     */
+    public RegexBudget.FailPolicy getFilterDeadlinePolicy() {
+        return values.filterDeadlinePolicy;
+    }
+
+    /**
+     * 是否启用消息判定缓存
+     * @return 是否启用
+     */
+    public boolean isMessageCache() {
+        return values.messageCache;
+    }
+
+    /**
+     * 获取消息判定缓存的最大条目数
+     * @return 最大条目数
+     */
+    public int getMessageCacheSize() {
+        return values.messageCacheSize;
+    }
+
+    /**
+     * 是否监视过滤器文件并自动重新加载
+     * @return 是否启用
+     */
+    public boolean isHotReload() {
+        return values.hotReload;
+    }
+
+    /**
+     * 获取热重载的防抖间隔
+     * @return 毫秒数
+     */
+    public long getHotReloadDebounceMillis() {
+        return values.hotReloadDebounceMillis;
+    }
+
+    /**
+     * 获取单条正则在一条消息上的执行步数上限
+     * @return 步数，0 表示不限
+     */
+    public long getRegexStepBudget() {
+        return values.regexStepBudget;
+    }
+
+    /**
+     * 获取正则超出执行预算时的处理策略
+     * @return 处理策略
+     */
+    public RegexBudget.FailPolicy getRegexBudgetPolicy() {
+        return values.regexBudgetPolicy;
+    }
+
+    /**
+     * 获取匹配前的规范化步骤
+     * @return 不可修改的步骤集合，为空表示不规范化
+     */
+    public Set<TextNormalizer.Stage> getNormalizeStages() {
+        return values.normalizeStages;
     }
 }
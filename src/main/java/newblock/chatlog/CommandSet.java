@@ -0,0 +1,136 @@
+package newblock.chatlog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 不区分大小写的命令名集合
+ * <p>
+ * 开放寻址哈希表，键在构建时统一转为小写。查询直接读取命令行中的一段字符，
+ * 不需要先截取子串或转换大小写，处理每条命令都不产生新对象。构建完成后不可变。
+ */
+public final class CommandSet {
+    /**
+     * 空集合
+     */
+    public static final CommandSet EMPTY = new CommandSet(List.of());
+
+    private final char[][] table;   // 小写的命令名，空槽为null
+    private final int mask;
+    private final int size;
+
+    private CommandSet(List<String> names) {
+        int capacity = Integer.highestOneBit(Math.max(4, names.size() * 2 - 1)) << 1;
+        this.table = new char[capacity][];
+        this.mask = capacity - 1;
+        int count = 0;
+        for (String name : names) {
+            char[] key = name.toCharArray();
+            int slot = hash(name, 0, key.length) & mask;
+            while (table[slot] != null && !equalsFolded(table[slot], name, 0, key.length)) {
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == null) {
+                table[slot] = key;
+                count++;
+            }
+        }
+        this.size = count;
+    }
+
+    /**
+     * 创建命令名集合。命令名会去掉前导斜杠与命名空间（如 {@code /essentials:msg} -> {@code msg}）
+     *
+     * @param names 命令名
+     * @return 命令名集合
+     */
+    public static CommandSet of(Collection<String> names) {
+        List<String> keys = new ArrayList<>(names.size());
+        for (String name : names) {
+            String key = normalize(name);
+            if (!key.isEmpty()) {
+                keys.add(key);
+            }
+        }
+        return keys.isEmpty() ? EMPTY : new CommandSet(keys);
+    }
+
+    /**
+     * 把命令名整理为集合中的键：去掉空白、前导斜杠与命名空间并转为小写
+     *
+     * @param name 命令名
+     * @return 键
+     */
+    public static String normalize(String name) {
+        String key = name.trim();
+        if (key.startsWith("/")) {
+            key = key.substring(1);
+        }
+        key = key.substring(key.lastIndexOf(':') + 1);
+        return key.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 查询文本中的一段是否为集合中的命令名（不区分大小写）
+     *
+     * @param text 文本
+     * @param start 起始位置（含）
+     * @param end 结束位置（不含）
+     * @return 在集合中返回true
+     */
+    public boolean contains(CharSequence text, int start, int end) {
+        if (size == 0 || end <= start) {
+            return false;
+        }
+        int slot = hash(text, start, end) & mask;
+        char[] key;
+        while ((key = table[slot]) != null) {
+            if (equalsFolded(key, text, start, end)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 查询命令名是否在集合中（不区分大小写）
+     *
+     * @param name 命令名
+     * @return 在集合中返回true
+     */
+    public boolean contains(String name) {
+        return contains(name, 0, name.length());
+    }
+
+    /**
+     * 获取命令名数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + Character.toLowerCase(s.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equalsFolded(char[] key, CharSequence s, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != Character.toLowerCase(s.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,129 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 监视插件目录中的配置文件，修改后在后台线程上重新加载
+ * <p>
+ * 编辑器保存文件时往往连续触发多次修改或"写临时文件再改名"，因此收到变化后会等待文件静止
+ * 一段时间（防抖），再把这段时间内变化过的文件名一次性交给回调，回调在监视线程上执行。
+ */
+public class ConfigWatcher {
+    private final Logger logger;
+    private final Path directory;
+    private final Set<String> fileNames;
+    private final long debounceMillis;
+    private final Consumer<Set<String>> onChange;
+    private final Thread thread;
+
+    private WatchService watchService;
+
+    /**
+     * 创建配置文件监视器
+     *
+     * @param logger 日志记录器
+     * @param directory 要监视的目录
+     * @param fileNames 关心的文件名，其余文件的变化会被忽略
+     * @param debounceMillis 文件静止多久后触发回调（毫秒）
+     * @param onChange 回调，参数为变化过的文件名
+     */
+    public ConfigWatcher(Logger logger, Path directory, Set<String> fileNames, long debounceMillis,
+                         Consumer<Set<String>> onChange) {
+        this.logger = logger;
+        this.directory = directory;
+        this.fileNames = Set.copyOf(fileNames);
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.onChange = onChange;
+        this.thread = new Thread(this::run, "ChatLog-Watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 开始监视
+     *
+     * @return 无法注册监视时返回false
+     */
+    public boolean start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.error("无法监视目录 {}，热重载未启用", directory, e);
+            return false;
+        }
+        thread.start();
+        logger.info("已开始监视 {} 中的 {}", directory, fileNames);
+        return true;
+    }
+
+    /**
+     * 停止监视
+     */
+    public void shutdown() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("关闭文件监视时发生错误", e);
+        }
+        thread.interrupt();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<String> changed = new HashSet<>();
+                collect(watchService.take(), changed);
+
+                // 防抖：持续收集，直到 debounceMillis 内没有新的变化
+                WatchKey key;
+                while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                if (changed.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    onChange.accept(changed);
+                } catch (Exception e) {
+                    logger.error("自动重新加载 {} 时发生错误", changed, e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 插件关闭
+        }
+    }
+
+    private void collect(WatchKey key, Set<String> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 事件丢失，无法确定哪些文件变化，全部重新加载
+                changed.addAll(fileNames);
+                continue;
+            }
+            String name = ((Path) event.context()).getFileName().toString();
+            if (fileNames.contains(name)) {
+                changed.add(name);
+            }
+        }
+        key.reset();
+    }
+}
@@ -0,0 +1,102 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 聊天消息在代理控制台上的回显
+ * <p>
+ * 繁忙的服务器上每条聊天都经过控制台 appender 会拖慢事件线程，也会淹没日志收集。
+ * 回显策略只作用于普通聊天；违规消息由 {@code violation.*} 提示始终输出，不受影响。
+ */
+public class ConsoleEcho {
+
+    /**
+     * 回显策略
+     */
+    public enum Mode {
+        FULL,       // 在事件线程上回显每条聊天
+        ASYNC,      // 交给异步日志写入线程回显，未启用异步日志时同 FULL
+        SAMPLED,    // 每 N 条回显一条，并可限制每秒条数
+        OFF         // 不回显聊天，只输出违规
+    }
+
+    private final Logger logger;
+    private final Mode mode;
+    private final int sampleRate;
+    private final int maxPerSecond;
+    private final AtomicLong sequence;      // 已收到的聊天条数，用于 1/N 抽样
+    private final AtomicLong windowSecond;  // 当前限速窗口的秒
+    private final AtomicInteger windowCount; // 当前窗口内已回显的条数
+
+    /**
+     * 创建控制台回显
+     *
+     * @param logger 日志记录器
+     * @param mode 回显策略
+     * @param sampleRate SAMPLED 时每多少条回显一条
+     * @param maxPerSecond SAMPLED 时每秒最多回显的条数，0 表示不限
+     */
+    public ConsoleEcho(Logger logger, Mode mode, int sampleRate, int maxPerSecond) {
+        this.logger = logger;
+        this.mode = mode;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.maxPerSecond = Math.max(0, maxPerSecond);
+        this.sequence = new AtomicLong();
+        this.windowSecond = new AtomicLong(Long.MIN_VALUE);
+        this.windowCount = new AtomicInteger();
+    }
+
+    /**
+     * 在事件线程上按策略回显一条聊天。ASYNC 时由调用方交给写入线程，不经过此方法
+     *
+     * @param entry 日志记录
+     */
+    public void offer(LogEntry entry) {
+        switch (mode) {
+            case FULL, ASYNC -> echo(entry);
+            case SAMPLED -> {
+                if (sample(entry.timestamp())) {
+                    echo(entry);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 直接回显一条聊天（无时间戳）
+     *
+     * @param entry 日志记录
+     */
+    public void echo(LogEntry entry) {
+        logger.info("[" + entry.serverName() + "] " + entry.playerName() + ": " + entry.content());
+    }
+
+    private boolean sample(long timestamp) {
+        if (sequence.getAndIncrement() % sampleRate != 0) {
+            return false;
+        }
+        if (maxPerSecond == 0) {
+            return true;
+        }
+        long second = timestamp / 1000L;
+        long current = windowSecond.get();
+        if (current != second && windowSecond.compareAndSet(current, second)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= maxPerSecond;
+    }
+
+    /**
+     * 获取回显策略
+     *
+     * @return 回显策略
+     */
+    public Mode getMode() {
+        return mode;
+    }
+}
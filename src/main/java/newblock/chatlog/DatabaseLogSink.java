@@ -0,0 +1,271 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 把日志记录批量写入嵌入式 H2 数据库
+ * <p>
+ * 数据库文件位于插件目录（chatlog.mv.db），以嵌入模式打开，不启动任何网络服务。记录先加入预编译语句的批次，
+ * 累计到批次大小或刷盘时一次执行并提交；批量插入失败时逐条重试，只丢弃本身无法写入的记录。表上有时间、玩家+时间、服务器+时间三个索引，
+ * 按玩家或服务器查询一段时间的聊天记录不需要扫描文本日志。
+ * 数据库用户为 chatlog，密码在第一次创建时随机生成并保存在同目录的 chatlog.key 中；
+ * 插件运行期间文件被独占，外部工具需要在代理关闭后用该用户与密码打开。
+ */
+public class DatabaseLogSink implements LogSink {
+    private static final String USER = "chatlog";
+    private static final int PASSWORD_BYTES = 24;
+    private static final String INSERT = "INSERT INTO chat_log (ts, type, server, player, content) VALUES (?, ?, ?, ?, ?)";
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS chat_log ("
+                    + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "ts BIGINT NOT NULL, "
+                    + "type VARCHAR(16) NOT NULL, "
+                    + "server VARCHAR(255) NOT NULL, "
+                    + "player VARCHAR_IGNORECASE(64) NOT NULL, "
+                    + "content VARCHAR NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS chat_log_ts ON chat_log (ts)",
+            "CREATE INDEX IF NOT EXISTS chat_log_player_ts ON chat_log (player, ts)",
+            "CREATE INDEX IF NOT EXISTS chat_log_server_ts ON chat_log (server, ts)"
+    };
+
+    private final Logger logger;
+    private final int batchSize;
+    private final Connection connection;
+    private final PreparedStatement insert;
+    private final List<LogEntry> batch;     // 已加入批次、尚未执行的记录，批量插入失败时逐条重试
+    private boolean closed;
+
+    private DatabaseLogSink(Logger logger, Connection connection, int batchSize) throws SQLException {
+        this.logger = logger;
+        this.batchSize = Math.max(1, batchSize);
+        this.connection = connection;
+        this.batch = new ArrayList<>(this.batchSize);
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        connection.commit();
+        this.insert = connection.prepareStatement(INSERT);
+    }
+
+    /**
+     * 打开数据库，不存在时创建表与索引
+     *
+     * @param logger 日志记录器
+     * @param file 数据库文件（不含 .mv.db 后缀），密码保存在同名的 .key 文件中
+     * @param batchSize 累计多少条执行一次批量插入
+     * @return 数据库输出目标，打开失败时返回null
+     */
+    public static DatabaseLogSink open(Logger logger, File file, int batchSize) {
+        String url = "jdbc:h2:file:" + file.getAbsolutePath();
+        File keyFile = new File(file.getParentFile(), file.getName() + ".key");
+        Connection connection = null;
+        try {
+            Properties info = new Properties();
+            info.setProperty("user", USER);
+            info.setProperty("password", loadPassword(keyFile));
+            // 直接使用驱动，插件的类加载器对 DriverManager 不可见
+            connection = org.h2.Driver.load().connect(url, info);
+            DatabaseLogSink sink = new DatabaseLogSink(logger, connection, batchSize);
+            logger.info("已启用数据库日志: {}.mv.db", file.getName());
+            return sink;
+        } catch (IOException e) {
+            logger.error("读取数据库密码文件时发生错误: {}", keyFile.getAbsolutePath(), e);
+            return null;
+        } catch (SQLException e) {
+            logger.error("打开数据库日志时发生错误: {}", url, e);
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {
+                    // 已经记录过错误
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 读取数据库密码，密码文件不存在时随机生成一个并保存，文件只允许所有者读写
+     */
+    private static String loadPassword(File keyFile) throws IOException {
+        Path path = keyFile.toPath();
+        if (Files.exists(path)) {
+            return Files.readString(path, StandardCharsets.US_ASCII).trim();
+        }
+        byte[] bytes = new byte[PASSWORD_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        String password = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Files.writeString(path, password + "\n", StandardCharsets.US_ASCII);
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ignored) {
+            // Windows 等不支持 POSIX 权限的文件系统沿用目录的权限
+        }
+        return password;
+    }
+
+    /**
+     * 把记录加入批次，累计到批次大小时执行并提交
+     *
+     * @param entry 日志记录
+     */
+    @Override
+    public synchronized void write(LogEntry entry) {
+        if (closed) {
+            return;
+        }
+        try {
+            bind(entry);
+            insert.addBatch();
+            batch.add(entry);
+            if (batch.size() >= batchSize) {
+                executeBatch();
+            }
+        } catch (SQLException e) {
+            logger.error("写入数据库日志时发生错误", e);
+        }
+    }
+
+    /**
+     * 执行剩余的批次并提交
+     */
+    @Override
+    public synchronized void flush() {
+        if (closed || batch.isEmpty()) {
+            return;
+        }
+        try {
+            executeBatch();
+        } catch (SQLException e) {
+            logger.error("写入数据库日志时发生错误", e);
+        }
+    }
+
+    private void executeBatch() throws SQLException {
+        List<LogEntry> rows = List.copyOf(batch);
+        batch.clear();
+        try {
+            insert.executeBatch();
+            connection.commit();
+        } catch (BatchUpdateException e) {
+            // 个别记录无法写入（如玩家名超长）时不连累同一批的其他记录
+            insert.clearBatch();
+            connection.rollback();
+            insertEach(rows);
+        } catch (SQLException e) {
+            // 放弃这一批，不影响之后的写入
+            insert.clearBatch();
+            connection.rollback();
+            logger.warn("数据库日志丢弃了 {} 条记录", rows.size());
+            throw e;
+        }
+    }
+
+    /**
+     * 逐条插入并提交，跳过无法写入的记录
+     */
+    private void insertEach(List<LogEntry> rows) throws SQLException {
+        int failed = 0;
+        SQLException first = null;
+        for (LogEntry entry : rows) {
+            try {
+                bind(entry);
+                insert.executeUpdate();
+            } catch (SQLException e) {
+                failed++;
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        connection.commit();
+        if (failed > 0) {
+            logger.warn("数据库日志丢弃了 {} 条无法写入的记录", failed, first);
+        }
+    }
+
+    private void bind(LogEntry entry) throws SQLException {
+        // 与文本日志、二进制日志一致，缺失的字段记为 "null"
+        insert.setLong(1, entry.timestamp());
+        insert.setString(2, entry.type().name());
+        insert.setString(3, valueOf(entry.serverName()));
+        insert.setString(4, valueOf(entry.playerName()));
+        insert.setString(5, valueOf(entry.content()));
+    }
+
+    private static String valueOf(String value) {
+        return value != null ? value : "null";
+    }
+
+    /**
+     * 提交剩余的记录并关闭数据库
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        try {
+            insert.close();
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("关闭数据库日志时发生错误", e);
+        }
+    }
+
+    /**
+     * 按玩家与时间范围查询记录，按时间先后排列
+     *
+     * @param player 玩家名称（不区分大小写），为null时查询全部玩家
+     * @param from 起始时间（毫秒，含）
+     * @param to 结束时间（毫秒，含）
+     * @param limit 最多返回的条数
+     * @return 记录列表
+     * @throws SQLException 查询失败时抛出
+     */
+    public synchronized List<LogEntry> query(String player, long from, long to, int limit) throws SQLException {
+        flush();
+        String sql = "SELECT ts, type, server, player, content FROM chat_log WHERE ts BETWEEN ? AND ?"
+                + (player != null ? " AND player = ?" : "") + " ORDER BY ts, id LIMIT ?";
+        List<LogEntry> entries = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(sql)) {
+            int index = 1;
+            select.setLong(index++, from);
+            select.setLong(index++, to);
+            if (player != null) {
+                select.setString(index++, player);
+            }
+            select.setInt(index, limit);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new LogEntry(LogEntry.Type.valueOf(rs.getString(2)), rs.getLong(1),
+                            rs.getString(3), rs.getString(4), rs.getString(5)));
+                }
+            }
+        }
+        return entries;
+    }
+}
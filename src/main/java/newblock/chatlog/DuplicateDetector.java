@@ -0,0 +1,240 @@
+package newblock.chatlog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按玩家检测重复与近似重复的聊天
+ * <p>
+ * 每条消息在忽略大小写、空白与标点后计算两个 64 位指纹：整段文本的精确哈希，以及以三字符片段为特征的 SimHash。
+ * 精确哈希相同，或 SimHash 的汉明距离不超过阈值，即视为同一条消息。每个在线玩家只保留最近若干条指纹，
+ * 定长数组一次分配，判断只需与这几条比较。
+ * 只对过滤器放行的消息调用 {@link #check}，带违禁词的消息（包括夹带违禁词的近似变体）照常按违规处理，
+ * 历史中也只有通过过滤的内容。窗口内超出允许次数的重复消息被拦截，只计数，
+ * 由 {@link #drain()} 汇总为 chat.log 中带重复次数的一行。
+ */
+public class DuplicateDetector {
+    // 规范化后少于这么多个字符时只比较精确哈希，片段太少时 SimHash 区分不开不同的短句
+    private static final int MIN_SIMHASH_LENGTH = 8;
+    private static final int SHINGLE = 3;
+
+    /**
+     * 判定结果
+     */
+    public enum Verdict {
+        ALLOWED,
+        DUPLICATE,          // 窗口内重复次数超出上限，且是这一轮里第一次被拦截，调用方可以提示玩家
+        SUPPRESSED          // 这一轮已经提示过，静默拦截
+    }
+
+    /**
+     * 一名玩家被拦截的重复消息
+     *
+     * @param playerName 玩家名称
+     * @param serverName 最近一次被拦截时所在的服务器
+     * @param content 最近一条被拦截的内容
+     * @param repeats 被拦截的条数
+     */
+    public record Suppressed(String playerName, String serverName, String content, int repeats) {
+    }
+
+    private final int capacity;
+    private final long windowMillis;
+    private final int maxRepeats;
+    private final int similarityBits;
+    private final Map<UUID, History> histories;
+
+    /**
+     * 创建重复消息检测器
+     *
+     * @param capacity 每个玩家保留的指纹条数
+     * @param windowMillis 判定重复的时间窗口（毫秒）
+     * @param maxRepeats 窗口内允许同一条消息出现的次数
+     * @param similarityBits SimHash 汉明距离不超过该值时视为近似重复，0 表示只检测完全相同的消息
+     */
+    public DuplicateDetector(int capacity, long windowMillis, int maxRepeats, int similarityBits) {
+        this.capacity = Math.max(1, capacity);
+        this.windowMillis = windowMillis;
+        this.maxRepeats = Math.max(1, maxRepeats);
+        this.similarityBits = Math.max(0, similarityBits);
+        this.histories = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 为登录的玩家创建记录
+     *
+     * @param uuid 玩家 UUID
+     * @param playerName 玩家名称
+     */
+    public void track(UUID uuid, String playerName) {
+        histories.computeIfAbsent(uuid, k -> new History(capacity, playerName));
+    }
+
+    /**
+     * 判断玩家的一条已通过过滤的聊天是否为重复消息，放行的消息记入历史，被拦截的计入汇总
+     *
+     * @param uuid 玩家 UUID
+     * @param serverName 服务器名称
+     * @param message 聊天内容
+     * @return 判定结果，玩家没有记录（未登录或已断开连接）时放行
+     */
+    public Verdict check(UUID uuid, String serverName, String message) {
+        History history = histories.get(uuid);
+        if (history == null) {
+            return Verdict.ALLOWED;     // 已断开连接，过滤线程上迟到的任务不再创建记录
+        }
+        return history.check(System.currentTimeMillis(), serverName, message, windowMillis, maxRepeats, similarityBits);
+    }
+
+    /**
+     * 取出并清零各玩家被拦截的重复消息
+     *
+     * @return 有拦截记录的玩家
+     */
+    public List<Suppressed> drain() {
+        List<Suppressed> result = new ArrayList<>();
+        for (History history : histories.values()) {
+            Suppressed suppressed = history.drain();
+            if (suppressed != null) {
+                result.add(suppressed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 移除玩家的记录
+     *
+     * @param uuid 玩家 UUID
+     * @return 尚未汇总的拦截记录，没有时返回null
+     */
+    public Suppressed evict(UUID uuid) {
+        History history = histories.remove(uuid);
+        return history == null ? null : history.drain();
+    }
+
+    /**
+     * 一名玩家最近的指纹，同一玩家的事件可能来自不同线程，读写都持有自身的锁
+     */
+    private static final class History {
+        private final long[] exact;
+        private final long[] similar;
+        private final boolean[] shingled;   // 是否足够长，可以比较 SimHash
+        private final long[] timestamps;
+        private final int[] weights = new int[Long.SIZE];
+        private final String playerName;
+        private int next;
+        private int size;
+        private int repeats;                // 本轮被拦截的条数
+        private String lastContent;
+        private String lastServer;
+        private long fpExact;               // fingerprint 的两个结果
+        private long fpSimilar;
+
+        History(int capacity, String playerName) {
+            this.exact = new long[capacity];
+            this.similar = new long[capacity];
+            this.shingled = new boolean[capacity];
+            this.timestamps = new long[capacity];
+            this.playerName = playerName;
+        }
+
+        synchronized Verdict check(long now, String server, String message,
+                                   long windowMillis, int maxRepeats, int similarityBits) {
+            int length = fingerprint(message);
+            if (length == 0) {
+                return Verdict.ALLOWED;     // 只有标点或表情符号，不参与比较
+            }
+            long exactHash = fpExact;
+            long simHash = fpSimilar;
+            boolean canCompare = similarityBits > 0 && length >= MIN_SIMHASH_LENGTH;
+
+            int matches = 0;
+            for (int i = 0; i < size; i++) {
+                if (now - timestamps[i] > windowMillis) {
+                    continue;
+                }
+                if (exact[i] == exactHash
+                        || canCompare && shingled[i] && Long.bitCount(similar[i] ^ simHash) <= similarityBits) {
+                    matches++;
+                }
+            }
+            if (matches >= maxRepeats) {
+                lastContent = message;
+                lastServer = server;
+                return ++repeats == 1 ? Verdict.DUPLICATE : Verdict.SUPPRESSED;
+            }
+
+            exact[next] = exactHash;
+            similar[next] = simHash;
+            shingled[next] = length >= MIN_SIMHASH_LENGTH;
+            timestamps[next] = now;
+            next = next + 1 == exact.length ? 0 : next + 1;
+            if (size < exact.length) {
+                size++;
+            }
+            return Verdict.ALLOWED;
+        }
+
+        synchronized Suppressed drain() {
+            if (repeats == 0) {
+                return null;
+            }
+            Suppressed suppressed = new Suppressed(playerName, lastServer, lastContent, repeats);
+            repeats = 0;
+            lastContent = null;
+            return suppressed;
+        }
+
+        /**
+         * 跳过空白与标点、忽略大小写，计算精确哈希与 SimHash，不分配内存
+         *
+         * @return 参与计算的字符数
+         */
+        private int fingerprint(String message) {
+            long hash = 0xcbf29ce484222325L;    // FNV-1a
+            int length = 0;
+            int c0 = 0;
+            int c1 = 0;
+            Arrays.fill(weights, 0);
+            for (int i = 0; i < message.length(); ) {
+                int cp = message.codePointAt(i);
+                i += Character.charCount(cp);
+                if (!Character.isLetterOrDigit(cp)) {
+                    continue;
+                }
+                cp = Character.toLowerCase(cp);
+                hash = (hash ^ cp) * 0x100000001b3L;
+                length++;
+                if (length >= SHINGLE) {
+                    long feature = mix(((long) c0 << 42) ^ ((long) c1 << 21) ^ cp);
+                    for (int bit = 0; bit < Long.SIZE; bit++) {
+                        weights[bit] += (feature >>> bit & 1L) != 0 ? 1 : -1;
+                    }
+                }
+                c0 = c1;
+                c1 = cp;
+            }
+            long sim = 0;
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                if (weights[bit] > 0) {
+                    sim |= 1L << bit;
+                }
+            }
+            fpExact = hash;
+            fpSimilar = sim;
+            return length;
+        }
+
+        // SplitMix64 的终结函数，让相邻片段的特征充分打散
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
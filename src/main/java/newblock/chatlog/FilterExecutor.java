@@ -0,0 +1,191 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 执行聊天与命令过滤的专用线程池
+ * <p>
+ * 事件处理器把正则匹配、替换和写日志交给这里，返回的 {@link CompletableFuture} 交给 Velocity 的
+ * {@code EventTask.resumeWhenComplete}，Netty 与事件线程不再等待过滤。任务在期限内没有完成时由超时处理代为决定放行或拦截；
+ * 两者通过 claim 竞争，只有先取得的一方可以修改事件，过滤线程在取得之前只做不产生副作用的匹配。
+ * 过滤线程取得 claim 后，返回的 future 要等任务结束才完成，期限到达不会让事件在结果确定之前继续；
+ * 超时处理在单独的期限线程上执行，不占用 JDK 共享的延时线程。
+ * 队列已满或线程池已关闭时任务直接在调用线程上执行，退回到同步处理。
+ */
+public class FilterExecutor {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    /**
+     * 线程类型
+     */
+    public enum Mode {
+        PLATFORM,   // 固定数量的平台线程
+        VIRTUAL     // 每个任务一个虚拟线程，需要 Java 21 及以上，否则退回平台线程
+    }
+
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor deadlines;
+    private final LongAdder timedOut;
+    private final LongAdder inline;
+
+    /**
+     * 创建过滤线程池
+     *
+     * @param logger 日志记录器
+     * @param mode 线程类型
+     * @param threads 平台线程数
+     * @param queueSize 等待过滤的任务上限
+     */
+    public FilterExecutor(Logger logger, Mode mode, int threads, int queueSize) {
+        this.logger = logger;
+        this.executor = mode == Mode.VIRTUAL ? createVirtual(logger, threads, queueSize) : createPlatform(threads, queueSize);
+        this.deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "ChatLog-FilterDeadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 任务按时完成后取消的期限不留在队列里
+        this.deadlines.setRemoveOnCancelPolicy(true);
+        this.timedOut = new LongAdder();
+        this.inline = new LongAdder();
+    }
+
+    private static ExecutorService createPlatform(int threads, int queueSize) {
+        AtomicInteger counter = new AtomicInteger();
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+                    Thread thread = new Thread(r, "ChatLog-Filter-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private static ExecutorService createVirtual(Logger logger, int threads, int queueSize) {
+        try {
+            // 插件按 Java 17 编译，虚拟线程只能在运行时查找
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("当前 Java 版本不支持虚拟线程，改用 {} 个平台线程过滤消息", Math.max(1, threads));
+            return createPlatform(threads, queueSize);
+        }
+    }
+
+    /**
+     * 在过滤线程上执行任务
+     *
+     * @param task 过滤任务，修改事件前必须调用参数并在其返回 false 时放弃，表示已按超时处理
+     * @param deadlineMillis 期限（毫秒），0 表示不限
+     * @param onTimeout 超出期限或任务在取得 claim 之前失败时执行
+     * @return 过滤线程取得 claim 时在任务结束后完成，超时处理取得 claim 时在超时处理结束后完成
+     */
+    public CompletableFuture<Void> submit(Consumer<BooleanSupplier> task, long deadlineMillis, Runnable onTimeout) {
+        AtomicBoolean settled = new AtomicBoolean();
+        BooleanSupplier claim = () -> settled.compareAndSet(false, true);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.accept(claim);
+                } catch (Exception e) {
+                    logger.error("过滤消息时发生错误", e);
+                    if (claim.getAsBoolean()) {
+                        runTimeout(onTimeout);
+                    }
+                } finally {
+                    done.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inline.increment();
+            task.accept(claim);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (deadlineMillis > 0 && !done.isDone()) {
+            ScheduledFuture<?> deadline;
+            try {
+                deadline = deadlines.schedule(() -> {
+                    if (claim.getAsBoolean()) {
+                        timedOut.increment();
+                        try {
+                            runTimeout(onTimeout);
+                        } finally {
+                            done.complete(null);
+                        }
+                    }
+                }, deadlineMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                return done;    // 正在关闭，不再限制期限
+            }
+            done.whenComplete((v, e) -> deadline.cancel(false));
+        }
+        return done;
+    }
+
+    private void runTimeout(Runnable onTimeout) {
+        try {
+            onTimeout.run();
+        } catch (Exception e) {
+            logger.error("处理过滤超时时发生错误", e);
+        }
+    }
+
+    /**
+     * 停止线程池，等待已提交的任务完成
+     */
+    public void shutdown() {
+        deadlines.shutdown();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 获取等待过滤的任务数
+     *
+     * @return 任务数，虚拟线程没有队列，始终为0
+     */
+    public int getQueueDepth() {
+        return executor instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+    }
+
+    /**
+     * 获取超出期限、按策略处理的任务数
+     *
+     * @return 任务数
+     */
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * 获取因队列已满而在事件线程上同步执行的任务数
+     *
+     * @return 任务数
+     */
+    public long getInlineCount() {
+        return inline.sum();
+    }
+}
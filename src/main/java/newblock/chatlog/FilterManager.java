@@ -8,21 +8,74 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
 /**
  * 管理违禁词过滤器
  */
 public class FilterManager {
+    private static final int MASK_LENGTH = 256;
+    private static final int MAX_CACHED_MESSAGE_LENGTH = 256;
+    private static final ThreadLocal<MatchIntervals> INTERVALS = ThreadLocal.withInitial(MatchIntervals::new);
+
     private final Logger logger;
     private final ChatlogConfig config;
-    private List<Pattern> forbiddenPatterns;
-    
-    // 替换相关
-    private List<Pattern> replacePatterns;
-    private String replaceWith;
-    private boolean hasReplaceConfig;
+    private final AtomicReference<Snapshot> snapshot; // 当前生效的过滤器，重新加载时整体替换
+
+    // 统计，重新加载后保留
+    private final LatencyHistogram checkLatency;      // checkMessage 总耗时（含缓存命中）
+    private final LatencyHistogram forbiddenLatency;  // 违禁词扫描耗时
+    private final LatencyHistogram replaceLatency;    // 替换耗时
+    private final LongAdder checkedCount;
+    private final LongAdder blockedCount;
+    private final LongAdder replacedCount;
+
+    /**
+     * 一条消息的过滤结果
+     *
+     * @param blocked 是否包含违禁词
+     * @param replaced 替换后的文本，没有替换时为null
+     */
+    public record Result(boolean blocked, String replaced) {
+        static final Result BLOCKED = new Result(true, null);
+        static final Result CLEAN = new Result(false, null);
+    }
+
+    /**
+     * 编译好的违禁词规则
+     *
+     * @param patterns 违禁词正则表达式列表（不可修改）
+     * @param matcher patterns 编译后的匹配引擎
+     * @param normalizer 匹配前的规范化器，字面量规则已按它规范化；未启用时为null
+     */
+    private record Forbidden(List<Pattern> patterns, FilterMatcher matcher, TextNormalizer normalizer) {
+        static final Forbidden EMPTY = new Forbidden(List.of(), new FilterMatcher.Builder().build(), null);
+    }
+
+    /**
+     * 编译好的替换规则
+     *
+     * @param patterns 替换正则表达式列表（不可修改）
+     * @param matcher patterns 编译后的匹配引擎
+     * @param mask 由替换字符串重复而成的掩码
+     * @param normalizer 匹配前的规范化器，字面量规则已按它规范化；未启用时为null
+     */
+    private record Replace(List<Pattern> patterns, FilterMatcher matcher, char[] mask, TextNormalizer normalizer) {
+    }
+
+    /**
+     * 一份完整的过滤器快照，发布后不再修改。事件线程每次处理只读取一次快照，
+     * 重新加载在调用线程上编译出新快照后一次性替换，处理中的消息始终使用同一份规则
+     *
+     * @param generation 过滤器代数，每次替换后递增，用于使缓存失效
+     * @param forbidden 违禁词规则
+     * @param replace 替换规则，没有替换配置时为null
+     * @param messageCache 消息判定缓存，未启用时为null
+     */
+    private record Snapshot(long generation, Forbidden forbidden, Replace replace, MessageVerdictCache messageCache) {
+    }
 
     /**
      * 创建过滤器管理器
@@ -33,65 +86,239 @@ public class FilterManager {
     public FilterManager(Logger logger, ChatlogConfig config) {
         this.logger = logger;
         this.config = config;
-        this.forbiddenPatterns = new ArrayList<>();
-        this.replacePatterns = new ArrayList<>();
-        this.replaceWith = "*";
-        this.hasReplaceConfig = false;
+        this.snapshot = new AtomicReference<>(new Snapshot(0, Forbidden.EMPTY, null, null));
+        this.checkLatency = new LatencyHistogram();
+        this.forbiddenLatency = new LatencyHistogram();
+        this.replaceLatency = new LatencyHistogram();
+        this.checkedCount = new LongAdder();
+        this.blockedCount = new LongAdder();
+        this.replacedCount = new LongAdder();
         loadFilters();
     }
 
     /**
-     * 从filter.yml加载违禁词正则表达式
+     * 从filter.yml加载违禁词正则表达式，替换配置保持不变
      */
     public void loadFilters() {
-        forbiddenPatterns = new ArrayList<>();
+        Forbidden forbidden = compileForbidden(false, createNormalizer());
+        MessageVerdictCache cache = createMessageCache();
+        snapshot.updateAndGet(current -> new Snapshot(current.generation() + 1, forbidden, current.replace(), cache));
+    }
+
+    /**
+     * 严格模式重新加载filter.yml：任意一行无法编译或文件无法读取时不做替换，继续使用当前的违禁词
+     *
+     * @return 是否已生效
+     */
+    public boolean tryReloadFilters() {
+        // 只重新读取违禁词，沿用当前的规范化器，与替换规则共用同一次规范化
+        Forbidden forbidden = compileForbidden(true, snapshot.get().forbidden().normalizer());
+        if (forbidden == null) {
+            return false;
+        }
+        snapshot.updateAndGet(current -> new Snapshot(current.generation() + 1, forbidden, current.replace(),
+                current.messageCache()));
+        return true;
+    }
+
+    /**
+     * 设置替换配置，违禁词规则保持不变
+     * 
+     * @param replaceConfig 替换配置
+     */
+    public void setReplaceConfig(FilterReplaceConfig replaceConfig) {
+        Replace replace = compileReplace(replaceConfig, snapshot.get().forbidden().normalizer());
+        snapshot.updateAndGet(current -> new Snapshot(current.generation() + 1, current.forbidden(), replace, current.messageCache()));
+    }
+
+    /**
+     * 重新加载违禁词与替换配置，两者编译完成后一次性生效
+     *
+     * @param replaceConfig 替换配置
+     */
+    public void reload(FilterReplaceConfig replaceConfig) {
+        TextNormalizer normalizer = createNormalizer();
+        Forbidden forbidden = compileForbidden(false, normalizer);
+        Replace replace = compileReplace(replaceConfig, normalizer);
+        MessageVerdictCache cache = createMessageCache();
+        snapshot.updateAndGet(current -> new Snapshot(current.generation() + 1, forbidden, replace, cache));
+    }
+
+    /**
+     * 编译filter.yml
+     *
+     * @param strict 为true时遇到无法编译的行或读取失败直接返回null，否则跳过该行
+     * @param normalizer 规范化器，为null时不规范化
+     * @return 编译结果，严格模式下失败时返回null
+     */
+    private Forbidden compileForbidden(boolean strict, TextNormalizer normalizer) {
+        List<Pattern> patterns = new ArrayList<>();
+        FilterMatcher.Builder builder = new FilterMatcher.Builder().budget(createBudget());
         File filterFile = config.getFilterFile();
 
         try (BufferedReader reader = new BufferedReader(new FileReader(filterFile))) {
             String line;
+            int lineNumber = 0;
             while ((line = reader.readLine()) != null) {
+                lineNumber++;
                 line = line.trim();
                 // 忽略空行或注释
                 if (line.isEmpty() || line.startsWith("#")) {
                     continue;
                 }
                 try {
-                    Pattern p = Pattern.compile(line, Pattern.CASE_INSENSITIVE);
-                    forbiddenPatterns.add(p);
+                    Pattern p = compileRule(line, normalizer);
+                    if (p == null) {
+                        logger.warn("filter.yml 第 {} 行规范化后为空，跳过: {}", lineNumber, line);
+                        continue;
+                    }
+                    patterns.add(p);
+                    builder.add(p);
+                    if (RegexBudget.isBacktrackingProne(line)) {
+                        logger.warn("filter.yml 第 {} 行含有嵌套的重复量词，可能发生灾难性回溯: {}", lineNumber, line);
+                    }
                 } catch (Exception ex) {
+                    if (strict) {
+                        logger.error("filter.yml 第 {} 行无法编译: {}，保留当前生效的违禁词。错误: {}",
+                                lineNumber, line, ex.getMessage());
+                        return null;
+                    }
                     logger.error("无法编译正则: {}，跳过此行。错误: {}", line, ex.getMessage());
                 }
             }
-            logger.info("已加载 {} 个违禁词正则", forbiddenPatterns.size());
         } catch (IOException e) {
+            if (strict) {
+                logger.error("读取 filter.yml 时发生错误，保留当前生效的违禁词", e);
+                return null;
+            }
             logger.error("读取 filter.yml 时发生错误，违禁词列表可能为空", e);
         }
+        FilterMatcher matcher = builder.build();
+        logger.info("已加载 {} 个违禁词正则（字面量 {} 个，正则 {} 个，其中可预过滤 {} 个）",
+                patterns.size(), matcher.getLiteralCount(), matcher.getRegexCount(), matcher.getPrefilteredCount());
+        return new Forbidden(List.copyOf(patterns), matcher, normalizer);
     }
 
-    /**
-     * 设置替换配置
-     * 
-     * @param replaceConfig 替换配置
-     */
-    public void setReplaceConfig(FilterReplaceConfig replaceConfig) {
+    private Replace compileReplace(FilterReplaceConfig replaceConfig, TextNormalizer normalizer) {
         if (replaceConfig == null) {
-            this.hasReplaceConfig = false;
-            return;
+            return null;
         }
-        
-        this.hasReplaceConfig = true;
-        this.replaceWith = replaceConfig.getReplaceWith();
-        this.replacePatterns.clear();
+
+        String replaceWith = replaceConfig.getReplaceWith();
+        if (replaceWith == null || replaceWith.isEmpty()) {
+            logger.warn("replace_with 不能为空，使用默认: *");
+            replaceWith = "*";
+        }
+        List<Pattern> patterns = new ArrayList<>();
+        FilterMatcher.Builder builder = new FilterMatcher.Builder().budget(createBudget());
         
         for (String pattern : replaceConfig.getReplacePatterns()) {
             try {
-                replacePatterns.add(Pattern.compile(pattern, Pattern.CASE_INSENSITIVE));
+                Pattern p = compileRule(pattern, normalizer);
+                if (p == null) {
+                    logger.warn("替换正则规范化后为空，跳过: {}", pattern);
+                    continue;
+                }
+                patterns.add(p);
+                builder.add(p);
+                if (RegexBudget.isBacktrackingProne(pattern)) {
+                    logger.warn("替换正则含有嵌套的重复量词，可能发生灾难性回溯: {}", pattern);
+                }
             } catch (Exception e) {
                 logger.error("编译替换正则表达式失败: {}", pattern, e);
             }
         }
         
-        logger.info("已加载 {} 个替换正则表达式", replacePatterns.size());
+        logger.info("已加载 {} 个替换正则表达式", patterns.size());
+        return new Replace(List.copyOf(patterns), builder.build(), buildMask(replaceWith), normalizer);
+    }
+
+    /**
+     * 编译一条规则。启用规范化时，纯字面量规则先按消息相同的步骤规范化，
+     * 这样 {@code ＢＡＤ}、{@code b.a.d} 之类的写法与消息规范化后的结果一致
+     *
+     * @param regex 规则
+     * @param normalizer 规范化器，为null时不规范化
+     * @return 编译后的规则，字面量规范化后为空时返回null
+     */
+    private static Pattern compileRule(String regex, TextNormalizer normalizer) {
+        if (normalizer != null) {
+            String literal = RegexLiterals.literalOf(regex);
+            if (literal != null) {
+                String normalized = normalizer.normalize(literal).text();
+                if (normalized.isEmpty()) {
+                    return null;
+                }
+                regex = RegexLiterals.escape(normalized);
+            }
+        }
+        return Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+    }
+
+    private TextNormalizer createNormalizer() {
+        return TextNormalizer.create(logger, config.getFilterFile().getParentFile(), config.getNormalizeStages());
+    }
+
+    private RegexBudget createBudget() {
+        return new RegexBudget(logger, config.getRegexStepBudget(), config.getRegexBudgetPolicy());
+    }
+
+    private MessageVerdictCache createMessageCache() {
+        return config.isMessageCache() ? new MessageVerdictCache(config.getMessageCacheSize()) : null;
+    }
+
+    /**
+     * 过滤一条聊天消息：先检查违禁词，未拦截时再做替换。启用缓存时重复的消息直接返回缓存结果
+     *
+     * @param message 聊天消息
+     * @return 过滤结果
+     */
+    public Result checkMessage(String message) {
+        long start = System.nanoTime();
+        Result result = check(message);
+        checkLatency.record(System.nanoTime() - start);
+        checkedCount.increment();
+        if (result.blocked()) {
+            blockedCount.increment();
+        } else if (result.replaced() != null) {
+            replacedCount.increment();
+        }
+        return result;
+    }
+
+    private Result check(String message) {
+        Snapshot current = snapshot.get();
+        MessageVerdictCache cache = current.messageCache();
+        if (cache != null) {
+            Result cached = cache.get(message, current.generation());
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Result result;
+        long start = System.nanoTime();
+        // 每条消息只规范化一次，违禁词与替换规则共用
+        TextNormalizer.Normalized normalized = normalize(current.forbidden().normalizer(), message);
+        boolean blocked = current.forbidden().matcher().find(normalized == null ? message : normalized.text());
+        long scanned = System.nanoTime();
+        forbiddenLatency.record(scanned - start);
+        if (blocked) {
+            result = Result.BLOCKED;
+        } else {
+            Replace replace = current.replace();
+            String replaced = replace == null ? null : replace(replace, message,
+                    replace.normalizer() == current.forbidden().normalizer() ? normalized : normalize(replace.normalizer(), message));
+            if (current.replace() != null) {
+                replaceLatency.record(System.nanoTime() - scanned);
+            }
+            result = replaced == null ? Result.CLEAN : new Result(false, replaced);
+        }
+
+        if (cache != null && message.length() <= MAX_CACHED_MESSAGE_LENGTH) {
+            cache.put(message, current.generation(), result);
+        }
+        return result;
     }
 
     /**
@@ -101,81 +328,164 @@ public class FilterManager {
      * @return 如果包含违禁词返回true，否则返回false
      */
     public boolean containsForbiddenWords(String text) {
-        for (Pattern pattern : forbiddenPatterns) {
-            if (pattern.matcher(text).find()) {
-                return true;
-            }
-        }
-        return false;
+        Forbidden forbidden = snapshot.get().forbidden();
+        TextNormalizer.Normalized normalized = normalize(forbidden.normalizer(), text);
+        return forbidden.matcher().find(normalized == null ? text : normalized.text());
     }
 
     /**
      * 替换文本中的违禁词
+     * <p>
+     * 所有替换规则都对原始文本匹配（单次扫描），各规则的命中区间合并后统一用替换字符覆盖，
+     * 因此结果与规则顺序无关。与逐条链式替换相比：后面的规则看不到前面规则产生的替换字符，
+     * 重叠的命中（如 {@code bad} 与 {@code badword}）会合并为一段整体覆盖。
+     * 启用规范化时对规范化后的文本匹配，再按位置映射覆盖原文中对应的字符。
      *
      * @param text 原始文本
      * @return 替换后的文本，如果没有替换则返回null
      */
     public String replaceFilteredWords(String text) {
-        if (!hasReplaceConfig || replacePatterns.isEmpty()) {
+        Replace replace = snapshot.get().replace();
+        return replace == null ? null : replace(replace, text, normalize(replace.normalizer(), text));
+    }
+
+    private static String replace(Replace replace, String text, TextNormalizer.Normalized normalized) {
+        if (replace.patterns().isEmpty()) {
             return null;
         }
-        
-        String result = text;
-        boolean replaced = false;
-        
-        for (Pattern pattern : replacePatterns) {
-            StringBuffer sb = new StringBuffer();
-            Matcher matcher = pattern.matcher(result);
-            
-            while (matcher.find()) {
-                replaced = true;
-                String replacement = generateReplacement(matcher.group().length());
-                matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
-            }
-            matcher.appendTail(sb);
-            
-            result = sb.toString();
+
+        MatchIntervals intervals = INTERVALS.get();
+        intervals.clear();
+        if (normalized == null) {
+            replace.matcher().collectMatches(text, intervals);
+        } else {
+            replace.matcher().collectMatches(normalized.text(), intervals);
+            intervals.remap(normalized);
         }
-        
-        return replaced ? result : null;
+        return intervals.isEmpty() ? null : intervals.apply(text, replace.mask());
+    }
+
+    private static TextNormalizer.Normalized normalize(TextNormalizer normalizer, String text) {
+        return normalizer == null ? null : normalizer.normalize(text);
     }
-    
+
     /**
-     * 生成指定长度的替换字符串
+     * 生成替换用的掩码：把替换字符串重复到不短于 {@value #MASK_LENGTH} 的整数倍长度
      *
-     * @param length 原始字符串长度
-     * @return 替换字符串
+     * @param replaceWith 替换字符串
+     * @return 掩码
      */
-    private String generateReplacement(int length) {
-        // 如果替换字符是单个字符，直接重复它
-        if (replaceWith.length() == 1) {
-            return replaceWith.repeat(length);
-        } else {
-            // 否则，创建一个足够长的替换字符串
-            StringBuilder sb = new StringBuilder();
-            while (sb.length() < length) {
-                sb.append(replaceWith);
-            }
-            // 截断到正确的长度
-            return sb.substring(0, length);
-        }
+    private static char[] buildMask(String replaceWith) {
+        int repeat = (MASK_LENGTH + replaceWith.length() - 1) / replaceWith.length();
+        return replaceWith.repeat(repeat).toCharArray();
     }
-    
+
     /**
      * 检查是否有替换配置
      *
      * @return 是否有替换配置
      */
     public boolean hasReplaceConfig() {
-        return hasReplaceConfig;
+        return snapshot.get().replace() != null;
+    }
+
+    /**
+     * 获取消息判定缓存
+     *
+     * @return 缓存，未启用时返回null
+     */
+    public MessageVerdictCache getMessageCache() {
+        return snapshot.get().messageCache();
+    }
+
+    /**
+     * 获取过滤器的代数，每次重新加载违禁词或替换配置后递增
+     *
+     * @return 当前代数
+     */
+    public long getGeneration() {
+        return snapshot.get().generation();
     }
 
     /**
      * 获取违禁词正则表达式列表
      *
-     * @return 违禁词正则表达式列表
+     * @return 不可修改的违禁词正则表达式列表
      */
     public List<Pattern> getForbiddenPatterns() {
-        return forbiddenPatterns;
+        return snapshot.get().forbidden().patterns();
+    }
+
+    /**
+     * 获取当前违禁词规则的匹配器，用于查看命中统计
+     *
+     * @return 匹配器
+     */
+    public FilterMatcher getForbiddenMatcher() {
+        return snapshot.get().forbidden().matcher();
+    }
+
+    /**
+     * 获取当前替换规则的匹配器，用于查看命中统计
+     *
+     * @return 匹配器，没有替换配置时返回null
+     */
+    public FilterMatcher getReplaceMatcher() {
+        Replace replace = snapshot.get().replace();
+        return replace == null ? null : replace.matcher();
+    }
+
+    /**
+     * 获取 {@link #checkMessage} 的总耗时分布（含缓存命中）
+     *
+     * @return 耗时直方图
+     */
+    public LatencyHistogram getCheckLatency() {
+        return checkLatency;
+    }
+
+    /**
+     * 获取违禁词扫描的耗时分布
+     *
+     * @return 耗时直方图
+     */
+    public LatencyHistogram getForbiddenLatency() {
+        return forbiddenLatency;
+    }
+
+    /**
+     * 获取替换的耗时分布
+     *
+     * @return 耗时直方图
+     */
+    public LatencyHistogram getReplaceLatency() {
+        return replaceLatency;
+    }
+
+    /**
+     * 获取已检查的消息数
+     *
+     * @return 消息数
+     */
+    public long getCheckedCount() {
+        return checkedCount.sum();
+    }
+
+    /**
+     * 获取被拦截的消息数
+     *
+     * @return 消息数
+     */
+    public long getBlockedCount() {
+        return blockedCount.sum();
+    }
+
+    /**
+     * 获取被替换的消息数
+     *
+     * @return 消息数
+     */
+    public long getReplacedCount() {
+        return replacedCount.sum();
     }
 }
@@ -0,0 +1,337 @@
+package newblock.chatlog;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的一组过滤规则
+ * <p>
+ * 每条规则尽量提取一个"键"：纯字面量规则的键就是它本身，正则规则的键是任何匹配都必须包含的
+ * 字面量片段（见 {@link RegexLiterals#requiredFactor}）。所有键合并进一个 {@link AhoCorasick}
+ * 自动机单次扫描；字面量规则在键出现时直接命中，正则规则只有在键出现时才交给
+ * {@link java.util.regex} 执行，提取不到键的正则每次都执行。构建完成后不可变。
+ */
+public final class FilterMatcher {
+    private final Pattern[] rules;        // 全部规则，按加入顺序
+    private final boolean[] exact;        // 规则本身是字面量，键出现即命中
+    private final boolean[] bordered;     // 字面量存在相同的前后缀，自身出现位置可能重叠
+    private final AhoCorasick keys;       // 没有任何键时为null
+    private final int[][] keyRules;       // 键编号 -> 拥有该键的规则下标
+    private final int[] unkeyed;          // 没有键、每次都要执行的规则下标
+    private final long[] unkeyedMask;     // unkeyed 的位图形式
+    private final int literalCount;
+    private final int prefilteredCount;
+    private final RegexBudget budget;     // 正则执行的步数预算
+    private final AtomicLongArray hits;   // 每条规则的命中次数
+
+    private FilterMatcher(List<Pattern> rules, List<String> ruleKeys, List<Boolean> exact, RegexBudget budget) {
+        int n = rules.size();
+        this.budget = budget;
+        this.hits = new AtomicLongArray(n);
+        this.rules = rules.toArray(new Pattern[0]);
+        this.exact = new boolean[n];
+        this.bordered = new boolean[n];
+        this.unkeyedMask = new long[(n + 63) >>> 6];
+
+        Map<String, List<Integer>> byKey = new LinkedHashMap<>();
+        List<Integer> unkeyedList = new ArrayList<>();
+        int literals = 0;
+        int prefiltered = 0;
+        for (int i = 0; i < n; i++) {
+            String key = ruleKeys.get(i);
+            if (key == null) {
+                unkeyedList.add(i);
+                unkeyedMask[i >>> 6] |= 1L << i;
+                continue;
+            }
+            this.exact[i] = exact.get(i);
+            if (this.exact[i]) {
+                this.bordered[i] = hasBorder(foldAscii(key));
+                literals++;
+            } else {
+                prefiltered++;
+            }
+            byKey.computeIfAbsent(foldAscii(key), k -> new ArrayList<>()).add(i);
+        }
+
+        List<String> keyList = new ArrayList<>(byKey.keySet());
+        this.keys = keyList.isEmpty() ? null : AhoCorasick.build(keyList);
+        this.keyRules = new int[keyList.size()][];
+        for (int k = 0; k < keyList.size(); k++) {
+            this.keyRules[k] = byKey.get(keyList.get(k)).stream().mapToInt(Integer::intValue).toArray();
+        }
+        this.unkeyed = unkeyedList.stream().mapToInt(Integer::intValue).toArray();
+        this.literalCount = literals;
+        this.prefilteredCount = prefiltered;
+    }
+
+    /**
+     * 文本中是否能找到任意一条规则
+     *
+     * @param text 要检查的文本
+     * @return 找到返回true
+     */
+    public boolean find(String text) {
+        if (keys != null) {
+            Scan scan = new Scan(text);
+            keys.forEachMatch(text, scan);
+            if (scan.found) {
+                return true;
+            }
+        }
+        for (int rule : unkeyed) {
+            if (budget.find(rules[rule], text)) {
+                hits.incrementAndGet(rule);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 收集所有规则在文本中的全部匹配区间
+     * <p>
+     * 每条规则各自按 {@link java.util.regex.Matcher#find()} 的方式从左到右取不重叠的匹配，
+     * 不同规则的区间可以相互重叠。字面量规则直接使用自动机报告的位置，
+     * 只有自身可能重叠出现的字面量（如 {@code aa}）才交给正则，以保持与逐条查找相同的结果。
+     *
+     * @param text 要检查的文本
+     * @param out 接收区间的集合
+     */
+    public void collectMatches(String text, MatchIntervals out) {
+        long[] pending = unkeyedMask.clone();
+        if (keys != null) {
+            keys.forEachMatch(text, (id, start, end) -> {
+                for (int rule : keyRules[id]) {
+                    if (exact[rule] && !bordered[rule]) {
+                        out.add(start, end);
+                        hits.incrementAndGet(rule);
+                    } else {
+                        pending[rule >>> 6] |= 1L << rule;
+                    }
+                }
+                return true;
+            });
+        }
+        for (int w = 0; w < pending.length; w++) {
+            for (long bits = pending[w]; bits != 0; bits &= bits - 1) {
+                int rule = (w << 6) + Long.numberOfTrailingZeros(bits);
+                int found = budget.collect(rules[rule], text, out);
+                if (found > 0) {
+                    hits.addAndGet(rule, found);
+                }
+            }
+        }
+    }
+
+    private static boolean contains(long[] set, int rule) {
+        return (set[rule >>> 6] & (1L << rule)) != 0;
+    }
+
+    /**
+     * 获取规则总数
+     *
+     * @return 规则总数
+     */
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * 获取字面量规则数量
+     *
+     * @return 字面量规则数量
+     */
+    public int getLiteralCount() {
+        return literalCount;
+    }
+
+    /**
+     * 获取正则规则数量
+     *
+     * @return 正则规则数量
+     */
+    public int getRegexCount() {
+        return rules.length - literalCount;
+    }
+
+    /**
+     * 获取命中次数最多的规则。检查时每条被拦截的消息只计入第一条命中的规则，
+     * 替换时每处匹配各计一次
+     *
+     * @param limit 最多返回几条
+     * @return 按命中次数从高到低排列的规则，不含从未命中的规则
+     */
+    public List<RuleHits> getTopHits(int limit) {
+        List<RuleHits> result = new ArrayList<>();
+        for (int i = 0; i < rules.length; i++) {
+            long count = hits.get(i);
+            if (count > 0) {
+                result.add(new RuleHits(rules[i].pattern(), count));
+            }
+        }
+        result.sort(Comparator.comparingLong(RuleHits::hits).reversed());
+        return result.size() > limit ? List.copyOf(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * 获取从未命中过的规则数量
+     *
+     * @return 规则数量
+     */
+    public int getUnhitCount() {
+        int unhit = 0;
+        for (int i = 0; i < rules.length; i++) {
+            if (hits.get(i) == 0) {
+                unhit++;
+            }
+        }
+        return unhit;
+    }
+
+    /**
+     * 一条规则的命中次数
+     *
+     * @param pattern 规则的正则表达式
+     * @param hits 命中次数
+     */
+    public record RuleHits(String pattern, long hits) {
+    }
+
+    /**
+     * 获取正则执行的步数预算
+     *
+     * @return 步数预算
+     */
+    public RegexBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * 获取有必需片段、可被预过滤跳过的正则规则数量
+     *
+     * @return 可预过滤的正则数量
+     */
+    public int getPrefilteredCount() {
+        return prefilteredCount;
+    }
+
+    private static boolean hasBorder(String s) {
+        // KMP 前缀函数：最后一位大于 0 说明存在相同的真前缀与真后缀
+        int[] prefix = new int[s.length()];
+        for (int i = 1; i < s.length(); i++) {
+            int k = prefix[i - 1];
+            while (k > 0 && s.charAt(i) != s.charAt(k)) {
+                k = prefix[k - 1];
+            }
+            if (s.charAt(i) == s.charAt(k)) {
+                k++;
+            }
+            prefix[i] = k;
+        }
+        return s.length() > 0 && prefix[s.length() - 1] > 0;
+    }
+
+    private static String foldAscii(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一次 {@link #find(String)} 扫描的状态
+     */
+    private final class Scan implements AhoCorasick.MatchListener {
+        private final String text;
+        private long[] tried;   // 已执行过的正则，同一片段多次出现时只执行一次
+        private boolean found;
+
+        Scan(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean onMatch(int id, int start, int end) {
+            for (int rule : keyRules[id]) {
+                if (exact[rule]) {
+                    hits.incrementAndGet(rule);
+                    found = true;
+                    return false;
+                }
+                if (tried == null) {
+                    tried = new long[(rules.length + 63) >>> 6];
+                }
+                if (contains(tried, rule)) {
+                    continue;
+                }
+                tried[rule >>> 6] |= 1L << rule;
+                if (budget.find(rules[rule], text)) {
+                    hits.incrementAndGet(rule);
+                    found = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 按加入顺序收集规则并构建 {@link FilterMatcher}
+     */
+    public static final class Builder {
+        private final List<Pattern> rules = new ArrayList<>();
+        private final List<String> keys = new ArrayList<>();
+        private final List<Boolean> exact = new ArrayList<>();
+        private RegexBudget budget = RegexBudget.UNLIMITED;
+
+        /**
+         * 设置正则执行的步数预算，默认不限
+         *
+         * @param budget 步数预算
+         * @return 当前构建器
+         */
+        public Builder budget(RegexBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * 加入一条规则
+         *
+         * @param pattern 以 {@link Pattern#CASE_INSENSITIVE} 编译的规则
+         * @return 当前构建器
+         */
+        public Builder add(Pattern pattern) {
+            String key = null;
+            boolean isLiteral = false;
+            if (pattern.flags() == Pattern.CASE_INSENSITIVE) {
+                key = RegexLiterals.literalOf(pattern.pattern());
+                isLiteral = key != null;
+                if (key == null) {
+                    key = RegexLiterals.requiredFactor(pattern.pattern());
+                }
+            }
+            rules.add(pattern);
+            keys.add(key);
+            exact.add(isLiteral);
+            return this;
+        }
+
+        /**
+         * 构建不可变的匹配器
+         *
+         * @return 匹配器
+         */
+        public FilterMatcher build() {
+            return new FilterMatcher(rules, keys, exact, budget);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package newblock.chatlog;
 import org.slf4j.Logger;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -21,8 +22,8 @@ import java.util.Map;
 public class FilterReplaceConfig {
     private final Logger logger;
     private final File configFile;
-    private List<String> replacePatterns;
-    private String replaceWith;
+    private volatile List<String> replacePatterns;
+    private volatile String replaceWith;
 
     /**
      * 创建违禁词替换配置管理器
@@ -33,7 +34,7 @@ public class FilterReplaceConfig {
     public FilterReplaceConfig(Logger logger, File pluginDir) {
         this.logger = logger;
         this.configFile = new File(pluginDir, "filter_replace.yml");
-        this.replacePatterns = new ArrayList<>();
+        this.replacePatterns = List.of();
         this.replaceWith = "*";
         createDefaultConfig();
         loadConfig();
@@ -52,6 +53,7 @@ public class FilterReplaceConfig {
                     + "\n"
                     + "# 需要替换的违禁词正则表达式列表\n"
                     + "# 每行一个正则表达式\n"
+                    + "# 所有规则都对原始消息匹配，命中的部分合并后统一替换，与规则顺序无关\n"
                     + "patterns:\n"
                     + "  - 'cnm'\n";
 
@@ -65,15 +67,33 @@ public class FilterReplaceConfig {
     }
 
     /**
-     * 加载配置
+     * 加载配置，无效的正则表达式会被跳过
      */
-    @SuppressWarnings("unchecked")
     public void loadConfig() {
-        replacePatterns.clear();
+        load(false);
+    }
+
+    /**
+     * 严格模式加载配置：任意一条正则无法编译或文件无法解析时不做替换，继续使用当前的配置
+     *
+     * @return 是否已生效
+     */
+    public boolean tryLoadConfig() {
+        return load(true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean load(boolean strict) {
+        // 先读到局部变量，读取完成后再替换，读取中的旧列表不会被清空
+        List<String> replacePatterns = new ArrayList<>();
+        String replaceWith = this.replaceWith;
         Yaml yaml = new Yaml(new SafeConstructor());
 
         try (InputStream in = new FileInputStream(configFile)) {
             Map<String, Object> data = yaml.load(in);
+            if (data == null) {
+                data = Map.of();
+            }
 
             // 加载替换字符
             if (data.containsKey("replace_with")) {
@@ -84,14 +104,21 @@ public class FilterReplaceConfig {
             if (data.containsKey("patterns")) {
                 Object patternsObj = data.get("patterns");
                 if (patternsObj instanceof List) {
-                    List<String> patterns = (List<String>) patternsObj;
-                    for (String pattern : patterns) {
+                    List<Object> patterns = (List<Object>) patternsObj;
+                    for (int i = 0; i < patterns.size(); i++) {
+                        Object item = patterns.get(i);
+                        String pattern = item == null ? null : item.toString();
                         if (pattern != null && !pattern.trim().isEmpty()) {
                             try {
                                 // 预编译检查正则表达式的有效性
                                 Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
                                 replacePatterns.add(pattern.trim());
                             } catch (PatternSyntaxException e) {
+                                if (strict) {
+                                    logger.error("filter_replace.yml 中 patterns 第 {} 项无法编译: {}，保留当前生效的替换配置。错误: {}",
+                                            i + 1, pattern, e.getMessage());
+                                    return false;
+                                }
                                 logger.error("无效的替换正则表达式: {}", pattern, e);
                             }
                         }
@@ -103,13 +130,19 @@ public class FilterReplaceConfig {
             } else {
                 logger.warn("未找到patterns配置项，替换列表将为空");
             }
-        } catch (IOException e) {
+        } catch (IOException | YAMLException e) {
             logger.error("读取 filter_replace.yml 时发生错误", e);
+            if (strict) {
+                return false;
+            }
         }
+        this.replaceWith = replaceWith;
+        this.replacePatterns = List.copyOf(replacePatterns);
+        return true;
     }
 
     /**
-     * 获取替换模式列表
+     * 获取替换模式列表（不可修改）
      */
     public List<String> getReplacePatterns() {
         return replacePatterns;
@@ -16,9 +16,100 @@ import java.util.Map;
  * 管理插件的语言配置
  */
 public class LangManager {
+    private static final String DEFAULT_LANG = ""
+            + "# ChatLog 语言配置文件\n"
+            + "\n"
+            + "# 插件消息\n"
+            + "plugin:\n"
+            + "  reload: \"§aChatLog 配置已重新加载！\"\n"
+            + "  reload_usage: \"§c用法：/chatlog <reload|stats|search|convert>\"\n"
+            + "  reload_busy: \"§e配置正在重新加载，请稍候\"\n"
+            + "  startup: \"ChatLog 插件已初始化，日志文件位置: {0}\"\n"
+            + "  shutdown: \"ChatLog 插件已关闭\"\n"
+            + "\n"
+            + "# 错误消息\n"
+            + "error:\n"
+            + "  create_dir: \"无法创建插件目录: {0}\"\n"
+            + "  create_file: \"无法创建{0}文件: {1}\"\n"
+            + "  write_log: \"写入{0}时发生错误\"\n"
+            + "\n"
+            + "# 违规处理消息\n"
+            + "violation:\n"
+            + "  username: \"玩家 {0} 用户名包含违禁词，已执行命令: {1}\"\n"
+            + "  chat: \"玩家 {0} 发送消息被拦截（包含违禁词）。内容: {1} 已执行命令: {2}\"\n"
+            + "  command: \"玩家 {0} 执行的命令被拦截（参数包含违禁词）。内容: {1} 已执行命令: {2}\"\n"
+            + "  rate_limited: \"玩家 {0} 发言过快，{1} 秒内有 {2} 条消息被拦截\"\n"
+            + "  punishment_merged: \"（窗口内已处罚过，未重复执行）\"\n"
+            + "  rate_limited_global: \"全服消息过多，{0} 秒内有 {1} 条消息被拦截\"\n"
+            + "\n"
+            + "# 配置相关消息\n"
+            + "config:\n"
+            + "  loaded_commands: \"已加载 CheckCommands，命令数: {0}\"\n"
+            + "  loaded_filters: \"已加载 {0} 个违禁词正则\"\n"
+            + "  default_config: \"已生成默认 config.yml，请根据需求修改各项配置\"\n"
+            + "  default_filter: \"已生成默认 filter.yml，请根据需求在每行添加违禁词正则\"\n"
+            + "  load_error: \"读取 {0} 时发生错误，使用默认配置\"\n"
+            + "\n"
+            + "# 消息替换提示\n"
+            + "message:\n"
+            + "  replaced: \"您的消息中包含敏感词，已被自动替换\"\n"
+            + "  rate_limited: \"您发言过快，请稍后再试\"\n"
+            + "  duplicate: \"请勿重复发送相同的消息\"\n"
+            + "\n"
+            + "# /chatlog stats\n"
+            + "stats:\n"
+            + "  header: \"§6==== ChatLog 统计 ====\"\n"
+            + "  messages: \"§e消息: §f检查 {0}，拦截 {1}，替换 {2}\"\n"
+            + "  cache: \"§e判定缓存: §f{0} 条，命中率 {1}%，淘汰 {2}\"\n"
+            + "  latency: \"§e{0}(µs): §f次数 {1}，平均 {2}，p50 {3}，p99 {4}，p99.9 {5}，最大 {6}\"\n"
+            + "  latency_check: \"过滤总耗时\"\n"
+            + "  latency_forbidden: \"违禁词扫描\"\n"
+            + "  latency_replace: \"替换\"\n"
+            + "  latency_write: \"日志写入\"\n"
+            + "  log: \"§e日志: §f队列 {0} 条，丢弃 {1} 条，已写入 {2} KB\"\n"
+            + "  filter_executor: \"§e过滤线程: §f队列 {0} 条，超时 {1} 条，满载时同步过滤 {2} 条\"\n"
+            + "  punishment: \"§e处罚: §f执行 {0}，窗口内合并 {1}，队列 {2} 条，丢弃 {3} 条\"\n"
+            + "  top_hits: \"§e{0}命中前 {1}（共 {2} 条，{3} 条自加载以来从未命中）:\"\n"
+            + "  top_hits_forbidden: \"违禁词\"\n"
+            + "  top_hits_replace: \"替换规则\"\n"
+            + "  top_hit: \"§7  {0}  §f{1}\"\n"
+            + "  budget_exceeded: \"§c  超出执行预算的正则: {0}\"\n"
+            + "\n"
+            + "# /chatlog search\n"
+            + "search:\n"
+            + "  usage: \"§c用法：/chatlog search [p:玩家] [t:14:00..15:00|t:2h] [正则]，/chatlog search page <页码>，/chatlog search cancel\"\n"
+            + "  cancelled: \"§e已取消搜索\"\n"
+            + "  not_running: \"§c没有正在进行的搜索\"\n"
+            + "  no_results: \"§c没有可翻页的搜索结果\"\n"
+            + "  invalid_page: \"§c页码应为数字\"\n"
+            + "  busy: \"§c已有搜索在进行，可使用 /chatlog search cancel 取消\"\n"
+            + "  invalid_regex: \"§c正则表达式无效: {0}\"\n"
+            + "  empty_query: \"§c至少需要指定玩家、时间范围或正则之一\"\n"
+            + "  invalid_unit: \"§c时间单位只能是 m、h、d\"\n"
+            + "  invalid_range: \"§c时间范围格式应为 t:14:00..15:00、t:2025-01-01T14:00..2025-01-01T15:00 或 t:2h\"\n"
+            + "  started: \"§e正在搜索日志...\"\n"
+            + "  header: \"§6==== 搜索结果 {0} 条，扫描 {1} MB，用时 {2} ms ===={3}\"\n"
+            + "  timed_out: \"§c（已超时，结果不完整）\"\n"
+            + "  partial_cancelled: \"§c（已取消，结果不完整）\"\n"
+            + "  truncated: \"§c（超过上限，只保留前 {0} 条）\"\n"
+            + "  hit: \"§7{0} §f{1}\"\n"
+            + "  page: \"§7第 {0}/{1} 页，使用 /chatlog search page <页码> 查看其他页\"\n"
+            + "\n"
+            + "# /chatlog convert\n"
+            + "convert:\n"
+            + "  usage: \"§c用法：/chatlog convert import <文件>、/chatlog convert export <yyyy-MM-dd> [yyyy-MM-dd] 或 /chatlog convert merge\"\n"
+            + "  merged: \"§a已按时间合并 {0} 行到 {1}\"\n"
+            + "  merge_failed: \"§c合并失败: {0}\"\n"
+            + "  file_not_found: \"§c插件目录下找不到文件: {0}\"\n"
+            + "  imported: \"§a已导入 {0} 条记录，跳过 {1} 行\"\n"
+            + "  import_failed: \"§c导入失败: {0}\"\n"
+            + "  invalid_date: \"§c日期格式应为 yyyy-MM-dd\"\n"
+            + "  exported: \"§a已导出 {0} 条记录到 {1} 与 {2}\"\n"
+            + "  export_failed: \"§c导出失败: {0}\"\n";
+
     private final Logger logger;
     private final File langFile;
-    private Map<String, String> messages;
+    private volatile Map<String, String> messages;
 
     /**
      * 创建语言管理器
@@ -29,7 +120,7 @@ public class LangManager {
     public LangManager(Logger logger, File pluginDir) {
         this.logger = logger;
         this.langFile = new File(pluginDir, "lang.yml");
-        this.messages = new HashMap<>();
+        this.messages = Map.of();
         createDefaultLangFile();
         loadLang();
     }
@@ -39,41 +130,8 @@ public class LangManager {
      */
     private void createDefaultLangFile() {
         if (!langFile.exists()) {
-            String defaultLang = ""
-                    + "# ChatLog 语言配置文件\n"
-                    + "\n"
-                    + "# 插件消息\n"
-                    + "plugin:\n"
-                    + "  reload: \"§aChatLog 配置已重新加载！\"\n"
-                    + "  reload_usage: \"§c用法：/chatlog reload\"\n"
-                    + "  startup: \"ChatLog 插件已初始化，日志文件位置: {0}\"\n"
-                    + "  shutdown: \"ChatLog 插件已关闭\"\n"
-                    + "\n"
-                    + "# 错误消息\n"
-                    + "error:\n"
-                    + "  create_dir: \"无法创建插件目录: {0}\"\n"
-                    + "  create_file: \"无法创建{0}文件: {1}\"\n"
-                    + "  write_log: \"写入{0}时发生错误\"\n"
-                    + "\n"
-                    + "# 违规处理消息\n"
-                    + "violation:\n"
-                    + "  username: \"玩家 {0} 用户名包含违禁词，已执行命令: {1}\"\n"
-                    + "  chat: \"玩家 {0} 发送消息被拦截（包含违禁词）。内容: {1} 已执行命令: {2}\"\n"
-                    + "\n"
-                    + "# 配置相关消息\n"
-                    + "config:\n"
-                    + "  loaded_commands: \"已加载 CheckCommands，命令数: {0}\"\n"
-                    + "  loaded_filters: \"已加载 {0} 个违禁词正则\"\n"
-                    + "  default_config: \"已生成默认 config.yml，请根据需求修改各项配置\"\n"
-                    + "  default_filter: \"已生成默认 filter.yml，请根据需求在每行添加违禁词正则\"\n"
-                    + "  load_error: \"读取 {0} 时发生错误，使用默认配置\"\n"
-                    + "\n"
-                    + "# 消息替换提示\n"
-                    + "message:\n"
-                    + "  replaced: \"您的消息中包含敏感词，已被自动替换\"\n";
-
             try {
-                Files.write(langFile.toPath(), defaultLang.getBytes());
+                Files.write(langFile.toPath(), DEFAULT_LANG.getBytes());
                 logger.info("已生成默认 lang.yml");
             } catch (IOException e) {
                 logger.error("创建默认 lang.yml 时出错", e);
@@ -86,12 +144,17 @@ public class LangManager {
      */
     @SuppressWarnings("unchecked")
     public void loadLang() {
-        messages.clear();
+        Map<String, String> loaded = new HashMap<>();
         Yaml yaml = new Yaml(new SafeConstructor());
+        // 先放入默认消息，旧版本生成的 lang.yml 缺少的 key 使用默认值
+        flattenMap("", yaml.load(DEFAULT_LANG), loaded);
 
         try (InputStream in = new FileInputStream(langFile)) {
             Map<String, Object> data = yaml.load(in);
-            flattenMap("", data);
+            if (data != null) {
+                flattenMap("", data, loaded);
+            }
+            messages = loaded;
             logger.info("已加载语言配置");
         } catch (IOException e) {
             logger.error("读取 lang.yml 时发生错误", e);
@@ -102,13 +165,13 @@ public class LangManager {
      * 将嵌套的Map扁平化为点分隔的key
      */
     @SuppressWarnings("unchecked")
-    private void flattenMap(String prefix, Map<String, Object> map) {
+    private void flattenMap(String prefix, Map<String, Object> map, Map<String, String> out) {
         for (Map.Entry<String, Object> entry : map.entrySet()) {
             String key = prefix.isEmpty() ? entry.getKey() : prefix + "." + entry.getKey();
             if (entry.getValue() instanceof Map) {
-                flattenMap(key, (Map<String, Object>) entry.getValue());
+                flattenMap(key, (Map<String, Object>) entry.getValue(), out);
             } else {
-                messages.put(key, String.valueOf(entry.getValue()));
+                out.put(key, String.valueOf(entry.getValue()));
             }
         }
     }
@@ -0,0 +1,263 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 日志轮转策略与归档处理
+ * <p>
+ * 切分本身只是一次重命名；压缩与过期清理都在低优先级的后台线程中进行，
+ * 不占用聊天事件线程。
+ */
+public class LogArchiver {
+
+    /**
+     * 归档文件的压缩方式
+     */
+    public enum Compression {
+        NONE,
+        GZIP
+    }
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final Logger logger;
+    private final File dir;
+    private final boolean daily;
+    private final long maxBytes;
+    private final String fileNamePattern;
+    private final Compression compression;
+    private final int retentionDays;
+    private final int maxArchives;
+    private final ExecutorService executor;
+
+    /**
+     * 创建日志归档器
+     *
+     * @param logger 日志记录器
+     * @param dir 日志所在目录
+     * @param config 配置管理器
+     */
+    public LogArchiver(Logger logger, File dir, ChatlogConfig config) {
+        this.logger = logger;
+        this.dir = dir;
+        this.daily = config.isLogRotateDaily();
+        this.maxBytes = config.getLogRotateMaxBytes();
+        this.fileNamePattern = config.getLogRotateFileName();
+        this.compression = config.getLogCompression();
+        this.retentionDays = config.getLogRetentionDays();
+        this.maxArchives = config.getLogMaxArchives();
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "ChatLog-Archiver");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * 是否启用了任何轮转条件
+     *
+     * @return 是否启用
+     */
+    public boolean isEnabled() {
+        return daily || maxBytes > 0;
+    }
+
+    /**
+     * 是否按天切分
+     *
+     * @return 是否按天切分
+     */
+    public boolean isDaily() {
+        return daily;
+    }
+
+    /**
+     * 获取单个文件的大小上限
+     *
+     * @return 字节数，0 表示不按大小切分
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 把已关闭的日志文件重命名为归档段，并在后台压缩与清理
+     *
+     * @param file 已关闭写入流的日志文件
+     * @param name 日志名（chat 或 warn）
+     * @param day 该段内容所属的日期
+     * @return 重命名成功返回true
+     */
+    public boolean archive(File file, String name, LocalDate day) {
+        File target = nextArchiveFile(name, day);
+        try {
+            Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("切分日志文件时发生错误: {} -> {}", file.getName(), target.getName(), e);
+            return false;
+        }
+        executor.execute(() -> {
+            compress(target);
+            prune(name);
+        });
+        return true;
+    }
+
+    /**
+     * 在后台压缩上次运行遗留的未压缩归档，并清理过期归档
+     *
+     * @param names 日志名列表
+     */
+    public void sweep(String... names) {
+        executor.execute(() -> {
+            for (String name : names) {
+                for (File archive : listArchives(name)) {
+                    if (!archive.getName().endsWith(GZIP_SUFFIX)) {
+                        compress(archive);
+                    }
+                }
+                prune(name);
+            }
+        });
+    }
+
+    /**
+     * 停止后台线程，等待正在进行的压缩完成
+     *
+     * @param timeoutMillis 最长等待时间（毫秒）
+     */
+    public void shutdown(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warn("日志归档线程未能及时结束，未压缩的归档将在下次启动时处理");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private File nextArchiveFile(String name, LocalDate day) {
+        String base = fileNamePattern
+                .replace("{name}", name)
+                .replace("{date}", day.format(DATE_FORMAT));
+        for (int index = 1; ; index++) {
+            String fileName;
+            if (base.contains("{index}")) {
+                fileName = base.replace("{index}", String.valueOf(index));
+            } else {
+                // 命名中没有序号时，重名则追加序号避免覆盖
+                fileName = index == 1 ? base : base + "." + index;
+            }
+            File candidate = new File(dir, fileName);
+            if (!candidate.exists() && !new File(dir, fileName + GZIP_SUFFIX).exists()) {
+                return candidate;
+            }
+        }
+    }
+
+    private void compress(File archive) {
+        if (compression != Compression.GZIP || !archive.exists()) {
+            return;
+        }
+        File gz = new File(archive.getParentFile(), archive.getName() + GZIP_SUFFIX);
+        File tmp = new File(archive.getParentFile(), gz.getName() + ".tmp");
+        try (InputStream in = Files.newInputStream(archive.toPath());
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp.toPath()), 64 * 1024)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            logger.error("压缩日志归档时发生错误: {}", archive.getName(), e);
+            tmp.delete();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), gz.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            gz.setLastModified(archive.lastModified());
+            Files.delete(archive.toPath());
+        } catch (IOException e) {
+            logger.error("替换压缩后的日志归档时发生错误: {}", archive.getName(), e);
+        }
+    }
+
+    private void prune(String name) {
+        if (retentionDays <= 0 && maxArchives <= 0) {
+            return;
+        }
+        List<File> archives = listArchives(name);
+        archives.sort(Comparator.comparingLong(File::lastModified).reversed());
+
+        long expireBefore = LocalDate.now().minusDays(retentionDays)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        for (int i = 0; i < archives.size(); i++) {
+            File archive = archives.get(i);
+            boolean tooMany = maxArchives > 0 && i >= maxArchives;
+            boolean expired = retentionDays > 0 && archive.lastModified() < expireBefore;
+            if ((tooMany || expired) && !archive.delete()) {
+                logger.warn("无法删除过期日志归档: {}", archive.getName());
+            }
+        }
+    }
+
+    /**
+     * 列出指定日志的全部归档段（含已压缩的）
+     *
+     * @param name 日志名（chat 或 warn）
+     * @return 归档文件列表
+     */
+    public List<File> listArchives(String name) {
+        Pattern pattern = archivePattern(Pattern.quote(name));
+        File[] files = dir.listFiles((d, fileName) -> pattern.matcher(fileName).matches());
+        return files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+    }
+
+    /**
+     * 判断文件名是否为任意日志的归档段
+     *
+     * @param fileName 文件名
+     * @return 是否为归档段
+     */
+    public boolean isArchiveName(String fileName) {
+        return archivePattern(".+").matcher(fileName).matches();
+    }
+
+    private Pattern archivePattern(String nameRegex) {
+        StringBuilder regex = new StringBuilder();
+        Matcher m = Pattern.compile("\\{(name|date|index)}").matcher(fileNamePattern);
+        int last = 0;
+        while (m.find()) {
+            regex.append(Pattern.quote(fileNamePattern.substring(last, m.start())));
+            switch (m.group(1)) {
+                case "name" -> regex.append(nameRegex);
+                case "date" -> regex.append("\\d{4}-\\d{2}-\\d{2}");
+                default -> regex.append("\\d+");
+            }
+            last = m.end();
+        }
+        regex.append(Pattern.quote(fileNamePattern.substring(last)));
+        regex.append("(\\.\\d+)?(\\.gz)?");
+        return Pattern.compile(regex.toString());
+    }
+}
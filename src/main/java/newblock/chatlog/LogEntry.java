@@ -0,0 +1,32 @@
+package newblock.chatlog;
+
+/**
+ * 一条待写入的日志记录
+ *
+ * @param type 记录类型
+ * @param timestamp 事件发生时间（毫秒时间戳），在事件线程上采集
+ * @param serverName 服务器名称
+ * @param playerName 玩家名称
+ * @param content 聊天内容或命令
+ */
+public record LogEntry(Type type, long timestamp, String serverName, String playerName, String content) {
+
+    /**
+     * 日志记录类型
+     */
+    public enum Type {
+        CHAT,       // 聊天，写入 chat.log
+        COMMAND,    // 命令，写入 chat.log
+        WARN,       // 违规，写入 warn.log
+        CONTEXT;    // 违规前的最近消息，写在违规记录之前，写入 warn.log
+
+        /**
+         * 是否写入 warn.log
+         *
+         * @return 写入 warn.log 时返回true
+         */
+        public boolean isWarning() {
+            return this == WARN || this == CONTEXT;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package newblock.chatlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 把日志记录直接编码为日志文件中的一行字节
+ * <p>
+ * 时间戳前缀按秒缓存，同一秒内的记录不再格式化日期；各字段依次拷贝进可复用的字符缓冲区，
+ * 再由复用的 {@link CharsetEncoder} 编码进调用方的输出缓冲区。输出与原先
+ * {@code String.format} 加 {@code FileWriter} 的写法逐字节相同：使用平台默认字符集，
+ * 无法编码的字符替换为 {@code ?}，行尾为 {@link System#lineSeparator()}。
+ * <p>
+ * 不是线程安全的，由持有它的 {@link RollingLogFile} 在锁内使用。
+ */
+public final class LogLineEncoder {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int INITIAL_CHARS = 512;
+
+    /**
+     * 输出缓冲区写满时调用，把已编码的内容写出并清空缓冲区
+     */
+    @FunctionalInterface
+    public interface Drain {
+        void drain(ByteBuffer out) throws IOException;
+    }
+
+    private final ZoneId zone;
+    private final CharsetEncoder encoder;
+    private final String lineSeparator;
+    private CharBuffer chars;
+
+    private long cachedSecond = Long.MIN_VALUE;   // 缓存的时间戳前缀对应的秒
+    private String cachedPrefix;                  // "[yyyy-MM-dd HH:mm:ss] "
+
+    /**
+     * 使用平台默认字符集与时区创建编码器
+     */
+    public LogLineEncoder() {
+        this(Charset.defaultCharset(), ZoneId.systemDefault());
+    }
+
+    /**
+     * 创建编码器
+     *
+     * @param charset 字符集
+     * @param zone 时间戳使用的时区
+     */
+    public LogLineEncoder(Charset charset, ZoneId zone) {
+        this.zone = zone;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.lineSeparator = System.lineSeparator();
+        this.chars = CharBuffer.allocate(INITIAL_CHARS);
+    }
+
+    /**
+     * 把一条记录连同换行符编码进输出缓冲区
+     *
+     * @param entry 日志记录
+     * @param out 输出缓冲区，处于写入模式
+     * @param drain 输出缓冲区写满时的处理
+     * @return 写出的字节数
+     * @throws IOException drain 写出失败时抛出
+     */
+    public int encode(LogEntry entry, ByteBuffer out, Drain drain) throws IOException {
+        chars.clear();
+        append(timestampPrefix(entry.timestamp()));
+        switch (entry.type()) {
+            case COMMAND -> append("[COMMAND] ");
+            case WARN -> append("[WARN] ");
+            case CONTEXT -> append("[CONTEXT] ");
+            default -> {
+            }
+        }
+        append("[");
+        append(entry.serverName());
+        append("] ");
+        append(entry.playerName());
+        append(entry.type() == LogEntry.Type.COMMAND ? ": /" : ": ");
+        append(entry.content());
+        append(lineSeparator);
+        chars.flip();
+
+        encoder.reset();
+        int written = 0;
+        int start = out.position();
+        while (encoder.encode(chars, out, true).isOverflow()) {
+            written += out.position() - start;
+            drain.drain(out);
+            start = out.position();
+        }
+        while (encoder.flush(out).isOverflow()) {
+            written += out.position() - start;
+            drain.drain(out);
+            start = out.position();
+        }
+        return written + out.position() - start;
+    }
+
+    private String timestampPrefix(long timestamp) {
+        long second = Math.floorDiv(timestamp, 1000L);
+        if (second != cachedSecond) {
+            cachedPrefix = "[" + LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone).format(DATE_FORMATTER) + "] ";
+            cachedSecond = second;
+        }
+        return cachedPrefix;
+    }
+
+    private void append(String s) {
+        String value = s != null ? s : "null";
+        if (chars.remaining() < value.length()) {
+            int capacity = Math.max(chars.capacity() * 2, chars.position() + value.length());
+            CharBuffer grown = CharBuffer.allocate(capacity);
+            chars.flip();
+            grown.put(chars);
+            chars = grown;
+        }
+        chars.put(value);
+    }
+}
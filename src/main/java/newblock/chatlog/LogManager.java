@@ -2,35 +2,90 @@ package newblock.chatlog;
 
 import org.slf4j.Logger;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * 管理日志文件的写入
+ * <p>
+ * 每条记录依次交给已启用的 {@link LogSink}：文本日志始终启用，二进制日志与数据库日志按配置启用。
  */
 public class LogManager {
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000L;
+
     private final Logger logger;
     private final File logFile;       // 聊天与命令日志文件
     private final File warnFile;      // 违规消息专用日志文件
-    private final DateTimeFormatter dateFormatter;
+    private final LogArchiver archiver;
+    private final LogPartitions files;         // chat.log、warn.log 与按服务器分区的文件
+    private final BinaryLogStore binaryLog;    // 二进制日志，未启用时为null
+    private final DatabaseLogSink database;    // 数据库日志，未启用或打开失败时为null
+    private final List<LogSink> sinks;         // 全部已启用的输出目标
+    private final AsyncLogWriter asyncWriter;  // 异步写入器，未启用时为null
+    private final ConsoleEcho consoleEcho;
+    private final boolean echoOnWriter;        // 聊天由写入线程回显
+    private final LatencyHistogram writeLatency;  // 事件线程上写一条记录的耗时（异步时为入队耗时）
 
     /**
      * 创建日志管理器
      *
      * @param logger 日志记录器
      * @param pluginDir 插件目录
+     * @param config 配置管理器
      */
-    public LogManager(Logger logger, File pluginDir) {
+    public LogManager(Logger logger, File pluginDir, ChatlogConfig config) {
         this.logger = logger;
         this.logFile = new File(pluginDir, "chat.log");
         this.warnFile = new File(pluginDir, "warn.log");
-        this.dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        this.writeLatency = new LatencyHistogram();
 
         initializeLogFiles();
+
+        this.archiver = new LogArchiver(logger, pluginDir, config);
+        this.files = new LogPartitions(logger, pluginDir, archiver, config.isLogPartitionByServer());
+        archiver.sweep("chat", "warn");
+        if (config.isLogPartitionByServer()) {
+            logger.info("已启用按服务器分区，各服务器的聊天写入 chat-<服务器>.log");
+        }
+        this.binaryLog = config.isBinaryLog()
+                ? new BinaryLogStore(logger, new File(pluginDir, "binlog"), config.getBinaryLogSegmentBytes())
+                : null;
+        this.database = config.isDatabaseLog()
+                ? DatabaseLogSink.open(logger, new File(pluginDir, "chatlog"), config.getDatabaseLogBatchSize())
+                : null;
+        List<LogSink> enabled = new ArrayList<>();
+        enabled.add(files);
+        if (binaryLog != null) {
+            enabled.add(binaryLog);
+        }
+        if (database != null) {
+            enabled.add(database);
+            if (!config.isAsyncLog()) {
+                logger.warn("DatabaseLog 未配合 AsyncLog 使用，每条记录都会单独提交，建议启用 AsyncLog");
+            }
+        }
+        this.sinks = List.copyOf(enabled);
+
+        this.consoleEcho = new ConsoleEcho(logger, config.getConsoleEcho(),
+                config.getConsoleEchoSampleRate(), config.getConsoleEchoMaxPerSecond());
+        this.echoOnWriter = config.getConsoleEcho() == ConsoleEcho.Mode.ASYNC && config.isAsyncLog();
+        if (config.getConsoleEcho() == ConsoleEcho.Mode.ASYNC && !config.isAsyncLog()) {
+            logger.warn("ConsoleEcho 为 ASYNC 但未启用 AsyncLog，聊天将在事件线程上回显");
+        }
+
+        if (config.isAsyncLog()) {
+            asyncWriter = new AsyncLogWriter(logger, sinks,
+                    config.getAsyncLogQueueSize(), config.getAsyncLogBatchSize(), config.getAsyncLogFlushIntervalMillis(),
+                    config.getAsyncLogOverflowPolicy(), echoOnWriter ? consoleEcho::echo : null);
+            asyncWriter.start();
+            logger.info("已启用异步日志写入，队列容量: {}，溢出策略: {}",
+                    config.getAsyncLogQueueSize(), config.getAsyncLogOverflowPolicy());
+        } else {
+            asyncWriter = null;
+        }
     }
 
     /**
@@ -68,15 +123,14 @@ public class LogManager {
      * @param message 聊天消息
      */
     public void logChat(String serverName, String playerName, String message) {
-        String timestamp = LocalDateTime.now().format(dateFormatter);
-
-        // 控制台输出（无时间戳）
-        String consoleOutput = String.format("[%s] %s: %s", serverName, playerName, message);
-        logger.info(consoleOutput);
+        LogEntry entry = new LogEntry(LogEntry.Type.CHAT, System.currentTimeMillis(), serverName, playerName, message);
+        // 控制台输出（无时间戳），ASYNC 时由写入线程在写入文件后输出
+        if (!echoOnWriter) {
+            consoleEcho.offer(entry);
+        }
 
         // 日志文件输出（带时间戳）
-        String logEntry = String.format("[%s] [%s] %s: %s", timestamp, serverName, playerName, message);
-        writeToFile(logFile, logEntry);
+        write(entry);
     }
 
     /**
@@ -87,10 +141,7 @@ public class LogManager {
      * @param command 执行的命令
      */
     public void logCommand(String serverName, String playerName, String command) {
-        String timestamp = LocalDateTime.now().format(dateFormatter);
-        String logEntry = String.format("[%s] [COMMAND] [%s] %s: /%s",
-                timestamp, serverName, playerName, command);
-        writeToFile(logFile, logEntry);
+        write(new LogEntry(LogEntry.Type.COMMAND, System.currentTimeMillis(), serverName, playerName, command));
     }
 
     /**
@@ -101,27 +152,66 @@ public class LogManager {
      * @param message 违规消息
      */
     public void logWarning(String serverName, String playerName, String message) {
-        String timestamp = LocalDateTime.now().format(dateFormatter);
-        String warnEntry = String.format("[%s] [WARN] [%s] %s: %s",
-                timestamp, serverName, playerName, message);
-        writeToFile(warnFile, warnEntry);
+        logWarning(serverName, playerName, message, List.of());
     }
 
     /**
-     * 写入内容到指定文件
+     * 记录违规警告，并在其之前写入玩家最近的消息作为上下文
      *
-     * @param file 目标文件
-     * @param content 要写入的内容
+     * @param serverName 服务器名称
+     * @param playerName 玩家名称
+     * @param message 违规消息
+     * @param context 违规前的最近消息，见 {@link RecentMessages#snapshot}
      */
-    private void writeToFile(File file, String content) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, true))) {
-            writer.write(content);
-            writer.newLine();
-        } catch (IOException e) {
-            logger.error("写入日志时发生错误: {}", file.getName(), e);
+    public void logWarning(String serverName, String playerName, String message, List<LogEntry> context) {
+        for (LogEntry entry : context) {
+            write(entry);
+        }
+        write(new LogEntry(LogEntry.Type.WARN, System.currentTimeMillis(), serverName, playerName, message));
+    }
+
+    /**
+     * 写入一条记录：启用异步写入时交给写入线程，否则在当前线程直接写入
+     *
+     * @param entry 日志记录
+     */
+    private void write(LogEntry entry) {
+        long start = System.nanoTime();
+        if (asyncWriter == null || !asyncWriter.submit(entry)) {
+            writeToSinks(entry);
+            if (echoOnWriter && entry.type() == LogEntry.Type.CHAT) {
+                // 写入器已关闭，未被接收的记录在当前线程回显
+                consoleEcho.echo(entry);
+            }
+        }
+        writeLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * 把记录写入全部输出目标并立即刷盘
+     *
+     * @param entry 要写入的记录
+     */
+    private void writeToSinks(LogEntry entry) {
+        for (LogSink sink : sinks) {
+            sink.write(entry);
+            sink.flush();
         }
     }
 
+    /**
+     * 关闭日志管理器，等待异步队列中的记录全部写入并关闭日志文件
+     */
+    public void shutdown() {
+        if (asyncWriter != null) {
+            asyncWriter.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+        }
+        for (LogSink sink : sinks) {
+            sink.close();
+        }
+        archiver.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+    }
+
     /**
      * 获取主日志文件路径
      *
@@ -130,4 +220,87 @@ public class LogManager {
     public String getLogFilePath() {
         return logFile.getAbsolutePath();
     }
+
+    /**
+     * 获取可搜索的文本日志文件：先是按时间排列的归档，最后是 chat.log、各服务器分区与 warn.log
+     *
+     * @return 文件列表
+     */
+    public List<File> getSearchableFiles() {
+        List<File> result = new ArrayList<>();
+        for (String name : files.chatNames()) {
+            result.addAll(archiver.listArchives(name));
+        }
+        result.addAll(archiver.listArchives("warn"));
+        result.sort(Comparator.comparingLong(File::lastModified));
+        // 让正在写入的内容对搜索可见
+        files.flush();
+        result.addAll(files.listActiveFiles());
+        return result;
+    }
+
+    /**
+     * 按时间把 chat.log 与各服务器分区合并为一个文件
+     *
+     * @param out 输出文件
+     * @return 写出的行数
+     * @throws IOException 读写失败时抛出
+     */
+    public long mergePartitions(File out) throws IOException {
+        return files.merge(out);
+    }
+
+    /**
+     * 获取二进制日志
+     *
+     * @return 二进制日志，未启用时为null
+     */
+    public BinaryLogStore getBinaryLog() {
+        return binaryLog;
+    }
+
+    /**
+     * 获取数据库日志
+     *
+     * @return 数据库日志，未启用时为null
+     */
+    public DatabaseLogSink getDatabase() {
+        return database;
+    }
+
+    /**
+     * 获取事件线程上写一条记录的耗时分布（异步写入时为入队耗时）
+     *
+     * @return 耗时直方图
+     */
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * 获取异步队列中等待写入的记录数
+     *
+     * @return 记录数，未启用异步写入时为0
+     */
+    public int getQueueDepth() {
+        return asyncWriter == null ? 0 : asyncWriter.pendingCount();
+    }
+
+    /**
+     * 获取因队列已满而丢弃的记录数
+     *
+     * @return 记录数，未启用异步写入时为0
+     */
+    public long getDroppedCount() {
+        return asyncWriter == null ? 0 : asyncWriter.getDroppedCount();
+    }
+
+    /**
+     * 获取全部文本日志累计写入的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesWritten() {
+        return files.getBytesWritten();
+    }
 }
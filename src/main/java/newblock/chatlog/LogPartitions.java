@@ -0,0 +1,325 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文本日志文件的路由：违规记录写入 warn.log，聊天与命令写入 chat.log
+ * <p>
+ * 按服务器分区时，每个后端服务器的聊天与命令写入各自的 chat-&lt;服务器&gt;.log，各有自己的缓冲区与文件通道，
+ * 不同服务器的写入不再争用同一个文件，刷盘由刷盘线程并行完成。服务器未知的记录仍写入 chat.log；
+ * warn.log 不分区，违规记录量小，排查时通常需要跨服务器查看。
+ * 需要合并视图时由 {@link #merge(File)} 按时间归并各分区。
+ */
+public class LogPartitions implements LogSink {
+    private static final String CHAT = "chat";
+    private static final String UNKNOWN_SERVER = "<unknown>";
+    private static final int MAX_FLUSH_THREADS = 4;
+    private static final int TIMESTAMP_LENGTH = "[yyyy-MM-dd HH:mm:ss]".length();
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Logger logger;
+    private final File dir;
+    private final LogArchiver archiver;
+    private final RollingLogFile chatLog;
+    private final RollingLogFile warnLog;
+    private final Map<String, RollingLogFile> partitions;    // 小写文件名 -> 分区，未分区时为null
+    private final Map<String, RollingLogFile> servers;       // 服务器名 -> 分区，查找用的缓存，未分区时为null
+    private final ExecutorService flushExecutor;             // 并行刷盘，未分区时为null
+
+    /**
+     * 创建日志文件路由
+     *
+     * @param logger 日志记录器
+     * @param dir 日志所在目录
+     * @param archiver 归档器
+     * @param partitionByServer 是否按服务器分区
+     */
+    public LogPartitions(Logger logger, File dir, LogArchiver archiver, boolean partitionByServer) {
+        this.logger = logger;
+        this.dir = dir;
+        this.archiver = archiver;
+        this.chatLog = new RollingLogFile(logger, new File(dir, "chat.log"), CHAT, archiver);
+        this.warnLog = new RollingLogFile(logger, new File(dir, "warn.log"), "warn", archiver);
+        if (partitionByServer) {
+            this.partitions = new ConcurrentHashMap<>();
+            this.servers = new ConcurrentHashMap<>();
+            AtomicInteger counter = new AtomicInteger();
+            this.flushExecutor = Executors.newFixedThreadPool(
+                    Math.min(MAX_FLUSH_THREADS, Runtime.getRuntime().availableProcessors()), r -> {
+                        Thread thread = new Thread(r, "ChatLog-Flush-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } else {
+            this.partitions = null;
+            this.servers = null;
+            this.flushExecutor = null;
+        }
+    }
+
+    /**
+     * 获取记录应写入的文件
+     *
+     * @param entry 日志记录
+     * @return 日志文件
+     */
+    public RollingLogFile route(LogEntry entry) {
+        if (entry.type().isWarning()) {
+            return warnLog;
+        }
+        String server = entry.serverName();
+        if (partitions == null || server == null || server.isEmpty() || UNKNOWN_SERVER.equals(server)) {
+            return chatLog;
+        }
+        RollingLogFile partition = servers.get(server);
+        return partition != null ? partition : servers.computeIfAbsent(server, this::partitionFor);
+    }
+
+    /**
+     * 分区按文件名区分：只有大小写不同的服务器名在不区分大小写的文件系统上是同一个文件，必须共用一个分区
+     */
+    private RollingLogFile partitionFor(String server) {
+        String name = CHAT + "-" + fileSafe(server);
+        return partitions.computeIfAbsent(name.toLowerCase(Locale.ROOT), key -> openPartition(server, name));
+    }
+
+    private RollingLogFile openPartition(String server, String name) {
+        File file = new File(dir, name + ".log");
+        logger.info("服务器 {} 的聊天记录写入 {}", server, file.getName());
+        archiver.sweep(name);
+        return new RollingLogFile(logger, file, name, archiver);
+    }
+
+    /**
+     * 把服务器名转换为可用于文件名的形式：ASCII 字母、数字、- 与 _ 保持不变，其余字符按 UTF-8 字节写成 %XX，
+     * 不同的服务器名不会得到相同的文件名
+     */
+    static String fileSafe(String server) {
+        StringBuilder sb = new StringBuilder(server.length());
+        for (byte b : server.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if (c < 128 && (Character.isLetterOrDigit(c) || c == '-' || c == '_')) {
+                sb.append((char) c);
+            } else {
+                sb.append('%').append(HEX[c >>> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 写入一条记录（不刷盘）
+     *
+     * @param entry 日志记录
+     */
+    @Override
+    public void write(LogEntry entry) {
+        route(entry).write(entry);
+    }
+
+    /**
+     * 刷盘全部文件，有多个分区待刷盘时在刷盘线程上并行进行
+     */
+    @Override
+    public void flush() {
+        chatLog.flush();
+        warnLog.flush();
+        if (partitions == null || partitions.isEmpty()) {
+            return;
+        }
+        List<RollingLogFile> dirty = new ArrayList<>();
+        for (RollingLogFile partition : partitions.values()) {
+            if (partition.hasBuffered()) {
+                dirty.add(partition);
+            }
+        }
+        if (dirty.isEmpty()) {
+            return;
+        }
+        // 第一个分区在当前线程上刷盘，只有一个分区待刷盘时不经过线程池
+        List<Future<?>> futures = new ArrayList<>(dirty.size() - 1);
+        for (int i = 1; i < dirty.size(); i++) {
+            futures.add(flushExecutor.submit(dirty.get(i)::flush));
+        }
+        dirty.get(0).flush();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("并行刷盘时发生错误", e.getCause());
+        }
+    }
+
+    /**
+     * 关闭全部文件
+     */
+    @Override
+    public void close() {
+        chatLog.close();
+        warnLog.close();
+        if (partitions != null) {
+            for (RollingLogFile partition : partitions.values()) {
+                partition.close();
+            }
+            flushExecutor.shutdown();
+            try {
+                flushExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 获取全部聊天日志名：chat 与各分区的 chat-&lt;服务器&gt;，用于查找归档
+     *
+     * @return 日志名列表
+     */
+    public List<String> chatNames() {
+        List<String> names = new ArrayList<>();
+        names.add(CHAT);
+        for (File file : listPartitionFiles()) {
+            String fileName = file.getName();
+            names.add(fileName.substring(0, fileName.length() - ".log".length()));
+        }
+        return names;
+    }
+
+    /**
+     * 列出目录下的分区文件，包括本次运行尚未写入、由之前的运行留下的
+     */
+    private List<File> listPartitionFiles() {
+        File[] files = dir.listFiles((d, fileName) -> fileName.startsWith(CHAT + "-") && fileName.endsWith(".log")
+                && !archiver.isArchiveName(fileName));
+        List<File> result = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                result.add(file);
+            }
+        }
+        result.sort(Comparator.comparing(File::getName));
+        return result;
+    }
+
+    /**
+     * 获取当前的文本日志文件：chat.log、各分区与 warn.log
+     *
+     * @return 文件列表
+     */
+    public List<File> listActiveFiles() {
+        List<File> files = new ArrayList<>();
+        files.add(new File(dir, "chat.log"));
+        files.addAll(listPartitionFiles());
+        files.add(new File(dir, "warn.log"));
+        return files;
+    }
+
+    /**
+     * 按时间把 chat.log 与各分区归并为一个文件，时间相同的行保持各自文件内的先后顺序
+     *
+     * @param out 输出文件
+     * @return 写出的行数
+     * @throws IOException 读写失败时抛出
+     */
+    public long merge(File out) throws IOException {
+        flush();
+        List<File> sources = new ArrayList<>();
+        sources.add(new File(dir, "chat.log"));
+        sources.addAll(listPartitionFiles());
+
+        List<BufferedReader> readers = new ArrayList<>();
+        PriorityQueue<Head> heads = new PriorityQueue<>(
+                Comparator.comparing(Head::key).thenComparingInt(Head::source));
+        long lines = 0;
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(out), Charset.defaultCharset()))) {
+            for (File source : sources) {
+                if (!source.isFile()) {
+                    continue;
+                }
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(source), Charset.defaultCharset()));
+                readers.add(reader);
+                advance(heads, reader, readers.size() - 1, "");
+            }
+            while (!heads.isEmpty()) {
+                Head head = heads.poll();
+                writer.write(head.line());
+                writer.newLine();
+                lines++;
+                advance(heads, readers.get(head.source()), head.source(), head.key());
+            }
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 读取来源的下一行放入归并队列；没有时间前缀的行（如内容中的换行）沿用上一行的时间
+     */
+    private static void advance(PriorityQueue<Head> heads, BufferedReader reader, int source, String previous)
+            throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return;
+        }
+        String key = line.length() >= TIMESTAMP_LENGTH && line.charAt(0) == '['
+                ? line.substring(0, TIMESTAMP_LENGTH) : previous;
+        heads.add(new Head(key, line, source));
+    }
+
+    /**
+     * 归并队列中一个来源的当前行
+     *
+     * @param key 时间前缀
+     * @param line 日志行
+     * @param source 来源序号
+     */
+    private record Head(String key, String line, int source) {
+    }
+
+    /**
+     * 获取全部文件累计写入的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesWritten() {
+        long bytes = chatLog.getBytesWritten() + warnLog.getBytesWritten();
+        if (partitions != null) {
+            for (RollingLogFile partition : partitions.values()) {
+                bytes += partition.getBytesWritten();
+            }
+        }
+        return bytes;
+    }
+}
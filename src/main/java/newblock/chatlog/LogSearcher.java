@@ -0,0 +1,583 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 在文本日志中搜索记录
+ * <p>
+ * 日志文件按固定大小切成若干块，在有界的 fork/join 线程池中并行扫描：未压缩的文件以内存映射方式读取，
+ * 先直接比较每行开头的时间戳字节和玩家名字节，只有通过的行才解码为字符串并匹配正则；.gz 归档整体作为一块流式读取。
+ * 搜索超出时间预算、结果达到上限或被取消时，各块尽快停止并返回已找到的部分。
+ */
+public class LogSearcher {
+    private static final long CHUNK_BYTES = 8L * 1024 * 1024;
+    private static final int MAX_LINE_BYTES = 64 * 1024;        // 超过此长度的行会被跳过
+    private static final int CHECK_INTERVAL = 1024;              // 每扫描多少行检查一次是否应停止
+    private static final long REGEX_STEP_BUDGET = 100_000;       // 搜索用正则的执行步数上限
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Logger logger;
+    private final ForkJoinPool pool;
+    private final long timeoutMillis;
+    private final int maxResults;
+    private final Charset charset;
+    private final ZoneId zone;
+
+    /**
+     * 搜索参数无效，提示内容由调用方按 key 从 lang.yml 读取
+     */
+    public static final class InvalidQueryException extends IllegalArgumentException {
+        private final String key;
+        private final transient Object[] args;
+
+        InvalidQueryException(String key, Object... args) {
+            super(key);
+            this.key = key;
+            this.args = args;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Object[] getArgs() {
+            return args;
+        }
+    }
+
+    /**
+     * 搜索条件
+     *
+     * @param player 玩家名（不区分大小写），为null时不限
+     * @param from 起始时间（毫秒，含）
+     * @param to 结束时间（毫秒，含）
+     * @param regex 内容需匹配的正则，为null时不限
+     */
+    public record Query(String player, long from, long to, Pattern regex) {
+
+        /**
+         * 解析命令参数：{@code p:玩家}、{@code t:起..止}（{@code HH:mm} 或 {@code yyyy-MM-ddTHH:mm}）、
+         * {@code t:30m}/{@code t:2h}/{@code t:1d}（最近一段时间），其余参数以空格连接作为正则
+         *
+         * @param args 参数
+         * @param zone 时区
+         * @return 搜索条件
+         * @throws InvalidQueryException 参数无效时抛出，带有 lang.yml 中的提示 key
+         */
+        public static Query parse(List<String> args, ZoneId zone) {
+            String player = null;
+            long from = Long.MIN_VALUE;
+            long to = Long.MAX_VALUE;
+            List<String> words = new ArrayList<>();
+            for (String arg : args) {
+                String lower = arg.toLowerCase(Locale.ROOT);
+                if (lower.startsWith("p:") && arg.length() > 2) {
+                    player = arg.substring(2);
+                } else if (lower.startsWith("t:") && arg.length() > 2) {
+                    long[] range = parseRange(arg.substring(2), zone);
+                    from = range[0];
+                    to = range[1];
+                } else {
+                    words.add(arg);
+                }
+            }
+            Pattern regex = null;
+            if (!words.isEmpty()) {
+                try {
+                    regex = Pattern.compile(String.join(" ", words), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                } catch (PatternSyntaxException e) {
+                    throw new InvalidQueryException("search.invalid_regex", e.getDescription());
+                }
+            }
+            if (player == null && regex == null && from == Long.MIN_VALUE && to == Long.MAX_VALUE) {
+                throw new InvalidQueryException("search.empty_query");
+            }
+            return new Query(player, from, to, regex);
+        }
+
+        private static long[] parseRange(String value, ZoneId zone) {
+            long now = System.currentTimeMillis();
+            try {
+                int sep = value.indexOf("..");
+                if (sep < 0) {
+                    char unit = Character.toLowerCase(value.charAt(value.length() - 1));
+                    long amount = Long.parseLong(value.substring(0, value.length() - 1));
+                    Duration duration = switch (unit) {
+                        case 'm' -> Duration.ofMinutes(amount);
+                        case 'h' -> Duration.ofHours(amount);
+                        case 'd' -> Duration.ofDays(amount);
+                        default -> throw new InvalidQueryException("search.invalid_unit");
+                    };
+                    return new long[]{now - duration.toMillis(), Long.MAX_VALUE};
+                }
+                long from = sep == 0 ? Long.MIN_VALUE : parseTime(value.substring(0, sep), zone);
+                long to = sep + 2 == value.length() ? Long.MAX_VALUE : parseTime(value.substring(sep + 2), zone) + 59_999;
+                return new long[]{from, to};
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new InvalidQueryException("search.invalid_range");
+            }
+        }
+
+        private static long parseTime(String value, ZoneId zone) {
+            LocalDateTime time = value.contains("T")
+                    ? LocalDateTime.parse(value)
+                    : LocalDate.now(zone).atTime(LocalTime.parse(value));
+            return time.atZone(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    /**
+     * 一条搜索结果
+     *
+     * @param file 所在文件名
+     * @param line 日志行
+     */
+    public record Hit(String file, String line) {
+    }
+
+    /**
+     * 搜索结果
+     *
+     * @param hits 命中的日志行，按文件与行的顺序排列
+     * @param truncated 命中数超过上限，只保留了部分
+     * @param timedOut 超出时间预算而提前结束
+     * @param cancelled 被取消
+     * @param bytes 扫描的字节数
+     * @param elapsedMillis 耗时（毫秒）
+     */
+    public record Outcome(List<Hit> hits, boolean truncated, boolean timedOut, boolean cancelled,
+                          long bytes, long elapsedMillis) {
+    }
+
+    /**
+     * 正在进行的搜索，可以取消
+     */
+    public static final class Search {
+        private final long deadline;
+        private final int maxResults;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicInteger found = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile boolean timedOut;
+
+        private Search(long deadline, int maxResults) {
+            this.deadline = deadline;
+            this.maxResults = maxResults;
+        }
+
+        /**
+         * 取消搜索，已找到的结果仍会返回
+         */
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        boolean shouldStop() {
+            if (cancelled.get() || found.get() > maxResults) {
+                return true;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                timedOut = true;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 创建搜索器
+     *
+     * @param logger 日志记录器
+     * @param threads 并行扫描的线程数
+     * @param timeoutMillis 单次搜索的时间预算（毫秒）
+     * @param maxResults 单次搜索最多保留的结果数
+     */
+    public LogSearcher(Logger logger, int threads, long timeoutMillis, int maxResults) {
+        this.logger = logger;
+        this.pool = new ForkJoinPool(Math.max(1, threads), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("ChatLog-Search-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, null, false);
+        this.timeoutMillis = Math.max(1, timeoutMillis);
+        this.maxResults = Math.max(1, maxResults);
+        this.charset = Charset.defaultCharset();
+        this.zone = ZoneId.systemDefault();
+    }
+
+    /**
+     * 在线程池中开始搜索，完成（含超时与取消）后在线程池线程上回调
+     *
+     * @param query 搜索条件
+     * @param files 要搜索的文件，按时间先后排列
+     * @param onComplete 完成后的回调
+     * @return 搜索句柄
+     */
+    public Search start(Query query, List<File> files, Consumer<Outcome> onComplete) {
+        long startNanos = System.nanoTime();
+        Search search = new Search(startNanos + timeoutMillis * 1_000_000L, maxResults);
+        List<Range> ranges = new ArrayList<>();
+        for (File file : files) {
+            // 最后修改时间早于起始时间的文件不可能包含范围内的记录
+            if (!file.isFile() || file.lastModified() < query.from()) {
+                continue;
+            }
+            if (file.getName().endsWith(".gz")) {
+                ranges.add(new Range(file, 0, file.length(), true));
+                continue;
+            }
+            long size = file.length();
+            for (long start = 0; start < size; start += CHUNK_BYTES) {
+                ranges.add(new Range(file, start, Math.min(size, start + CHUNK_BYTES), false));
+            }
+        }
+        LineFilter filter = new LineFilter(query, charset, new RegexBudget(logger, REGEX_STEP_BUDGET, RegexBudget.FailPolicy.OPEN));
+        pool.execute(() -> {
+            List<Hit> hits;
+            try {
+                hits = ranges.isEmpty() ? List.of() : new RangeTask(ranges, 0, ranges.size(), filter, search).invoke();
+            } catch (RuntimeException e) {
+                logger.error("搜索日志时发生错误", e);
+                hits = List.of();
+            }
+            boolean truncated = hits.size() > maxResults;
+            if (truncated) {
+                hits = List.copyOf(hits.subList(0, maxResults));
+            }
+            long elapsed = (System.nanoTime() - startNanos) / 1_000_000L;
+            onComplete.accept(new Outcome(hits, truncated, search.timedOut, search.cancelled.get(),
+                    search.bytes.get(), elapsed));
+        });
+        return search;
+    }
+
+    /**
+     * 在线程池中通过二进制日志的索引搜索，只读取时间范围重叠且该玩家出现过的块，完成后在线程池线程上回调
+     *
+     * @param query 搜索条件
+     * @param store 二进制日志
+     * @param onComplete 完成后的回调
+     * @return 搜索句柄
+     */
+    public Search start(Query query, BinaryLogStore store, Consumer<Outcome> onComplete) {
+        long startNanos = System.nanoTime();
+        Search search = new Search(startNanos + timeoutMillis * 1_000_000L, maxResults);
+        RegexBudget budget = new RegexBudget(logger, REGEX_STEP_BUDGET, RegexBudget.FailPolicy.OPEN);
+        pool.execute(() -> {
+            List<Hit> hits = new ArrayList<>();
+            int[] visited = new int[1];
+            try {
+                store.visit(query.player(), query.from(), query.to(), entry -> {
+                    if (++visited[0] % CHECK_INTERVAL == 0 && search.shouldStop()) {
+                        return false;
+                    }
+                    search.bytes.addAndGet(entry.content().length());
+                    if (query.regex() == null || budget.find(query.regex(), entry.content())) {
+                        hits.add(new Hit("binlog", formatLine(entry)));
+                        return search.found.incrementAndGet() <= maxResults;
+                    }
+                    return true;
+                });
+            } catch (IOException | RuntimeException e) {
+                logger.error("搜索二进制日志时发生错误", e);
+            }
+            boolean truncated = hits.size() > maxResults;
+            List<Hit> result = truncated ? List.copyOf(hits.subList(0, maxResults)) : hits;
+            long elapsed = (System.nanoTime() - startNanos) / 1_000_000L;
+            onComplete.accept(new Outcome(result, truncated, search.timedOut, search.cancelled.get(),
+                    search.bytes.get(), elapsed));
+        });
+        return search;
+    }
+
+    /**
+     * 把二进制日志中的记录格式化为与文本日志相同的一行
+     */
+    private String formatLine(LogEntry entry) {
+        StringBuilder line = new StringBuilder(64 + entry.content().length())
+                .append('[')
+                .append(LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp()), zone).format(DATE_FORMATTER))
+                .append("] ");
+        switch (entry.type()) {
+            case COMMAND -> line.append("[COMMAND] ");
+            case WARN -> line.append("[WARN] ");
+            case CONTEXT -> line.append("[CONTEXT] ");
+            default -> {
+            }
+        }
+        return line.append('[').append(entry.serverName()).append("] ")
+                .append(entry.playerName())
+                .append(entry.type() == LogEntry.Type.COMMAND ? ": /" : ": ")
+                .append(entry.content())
+                .toString();
+    }
+
+    /**
+     * 停止线程池，正在进行的搜索被中断
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 文件中的一段
+     */
+    private record Range(File file, long start, long end, boolean gzip) {
+    }
+
+    /**
+     * 对半拆分区间列表，结果按区间顺序合并
+     */
+    private final class RangeTask extends RecursiveTask<List<Hit>> {
+        private final List<Range> ranges;
+        private final int lo;
+        private final int hi;
+        private final LineFilter filter;
+        private final Search search;
+
+        RangeTask(List<Range> ranges, int lo, int hi, LineFilter filter, Search search) {
+            this.ranges = ranges;
+            this.lo = lo;
+            this.hi = hi;
+            this.filter = filter;
+            this.search = search;
+        }
+
+        @Override
+        protected List<Hit> compute() {
+            if (hi - lo == 1) {
+                List<Hit> hits = new ArrayList<>();
+                Range range = ranges.get(lo);
+                try {
+                    if (range.gzip()) {
+                        scanGzip(range, filter, search, hits);
+                    } else {
+                        scanMapped(range, filter, search, hits);
+                    }
+                } catch (IOException e) {
+                    logger.warn("搜索时无法读取日志文件: {}", range.file().getName(), e);
+                }
+                return hits;
+            }
+            int mid = (lo + hi) >>> 1;
+            RangeTask left = new RangeTask(ranges, lo, mid, filter, search);
+            left.fork();
+            List<Hit> right = new RangeTask(ranges, mid, hi, filter, search).compute();
+            List<Hit> result = left.join();
+            result.addAll(right);
+            return result;
+        }
+    }
+
+    private void scanMapped(Range range, LineFilter filter, Search search, List<Hit> hits) throws IOException {
+        try (FileChannel channel = FileChannel.open(range.file().toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            // 从前一个字节开始映射，以判断块的开头是否正好是一行的开头；末尾多映射一段以读完跨块的最后一行
+            long mapStart = Math.max(0, range.start() - 1);
+            long mapEnd = Math.min(size, range.end() + MAX_LINE_BYTES);
+            if (mapStart >= mapEnd) {
+                return;
+            }
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            int limit = buf.limit();
+            int ownEnd = (int) (Math.min(range.end(), size) - mapStart);   // 只处理行首落在本块内的行
+            int pos = 0;
+            if (range.start() > 0) {
+                if (buf.get(0) != '\n') {
+                    pos = indexOf(buf, '\n', 0, limit);
+                    if (pos < 0) {
+                        return;
+                    }
+                }
+                pos++;
+            }
+            int lines = 0;
+            byte[] line = new byte[256];
+            while (pos < ownEnd) {
+                if (++lines % CHECK_INTERVAL == 0 && search.shouldStop()) {
+                    break;
+                }
+                int newline = indexOf(buf, '\n', pos, limit);
+                int end = newline >= 0 ? newline : limit;
+                if (newline < 0 && mapEnd < size) {
+                    break;      // 行过长，跳过剩余部分
+                }
+                int length = end - pos;
+                if (length > 0 && buf.get(end - 1) == '\r') {
+                    length--;
+                }
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                buf.get(pos, line, 0, length);
+                if (filter.prefilter(line, length)) {
+                    String text = new String(line, 0, length, charset);
+                    if (filter.matches(text, zone)) {
+                        hits.add(new Hit(range.file().getName(), text));
+                        search.found.incrementAndGet();
+                    }
+                }
+                pos = end + 1;
+            }
+            search.bytes.addAndGet(Math.max(0, Math.min(pos, ownEnd) - (range.start() > 0 ? 1 : 0)));
+        }
+    }
+
+    private void scanGzip(Range range, LineFilter filter, Search search, List<Hit> hits) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(range.file()), 64 * 1024), charset))) {
+            String text;
+            int lines = 0;
+            while ((text = reader.readLine()) != null) {
+                if (++lines % CHECK_INTERVAL == 0 && search.shouldStop()) {
+                    break;
+                }
+                if (filter.matches(text, zone)) {
+                    hits.add(new Hit(range.file().getName(), text));
+                    search.found.incrementAndGet();
+                }
+            }
+            search.bytes.addAndGet(range.end());
+        }
+    }
+
+    private static int indexOf(MappedByteBuffer buf, char c, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buf.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 判断日志行是否符合搜索条件。可在多个线程间共享
+     */
+    private static final class LineFilter {
+        private final Query query;
+        private final RegexBudget budget;
+        private final byte[] fromStamp;     // "yyyy-MM-dd HH:mm:ss" 的字节，为null时不限
+        private final byte[] toStamp;
+        private final byte[] playerNeedle;  // "] 玩家: " 按日志字符集编码、ASCII 字母转小写的字节，为null时不限
+
+        LineFilter(Query query, Charset charset, RegexBudget budget) {
+            this.query = query;
+            this.budget = budget;
+            ZoneId zone = ZoneId.systemDefault();
+            this.fromStamp = query.from() == Long.MIN_VALUE ? null : stamp(query.from(), zone);
+            this.toStamp = query.to() == Long.MAX_VALUE ? null : stamp(query.to(), zone);
+            this.playerNeedle = query.player() == null ? null : lowerAscii(("] " + query.player() + ": ").getBytes(charset));
+        }
+
+        /**
+         * 与 {@link #containsIgnoreCase} 一致，只把 ASCII 字母转为小写，其余字节原样比较
+         */
+        private static byte[] lowerAscii(byte[] bytes) {
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] >= 'A' && bytes[i] <= 'Z') {
+                    bytes[i] += 'a' - 'A';
+                }
+            }
+            return bytes;
+        }
+
+        private static byte[] stamp(long millis, ZoneId zone) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone)
+                    .format(DATE_FORMATTER).getBytes(StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * 只比较字节：行首的时间戳是否在范围内，行中是否出现玩家名
+         */
+        boolean prefilter(byte[] line, int length) {
+            if (fromStamp != null || toStamp != null) {
+                if (length < 21 || line[0] != '[') {
+                    return false;
+                }
+                if (fromStamp != null && compare(line, fromStamp) < 0) {
+                    return false;
+                }
+                if (toStamp != null && compare(line, toStamp) > 0) {
+                    return false;
+                }
+            }
+            return playerNeedle == null || containsIgnoreCase(line, length, playerNeedle);
+        }
+
+        boolean matches(String text, ZoneId zone) {
+            LogEntry entry = BinaryLogConverter.parseLine(text, zone);
+            if (entry == null) {
+                return false;
+            }
+            // 文本中的时间只精确到秒
+            if (entry.timestamp() + 999 < query.from() || entry.timestamp() > query.to()) {
+                return false;
+            }
+            if (query.player() != null && !entry.playerName().equalsIgnoreCase(query.player())) {
+                return false;
+            }
+            return query.regex() == null || budget.find(query.regex(), entry.content());
+        }
+
+        private static int compare(byte[] line, byte[] stamp) {
+            for (int i = 0; i < stamp.length; i++) {
+                int diff = line[i + 1] - stamp[i];
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return 0;
+        }
+
+        private static boolean containsIgnoreCase(byte[] line, int length, byte[] needle) {
+            outer:
+            for (int i = 0; i + needle.length <= length; i++) {
+                for (int j = 0; j < needle.length; j++) {
+                    byte b = line[i + j];
+                    if (b >= 'A' && b <= 'Z') {
+                        b += 'a' - 'A';
+                    }
+                    if (b != needle[j]) {
+                        continue outer;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package newblock.chatlog;
+
+/**
+ * 日志记录的输出目标
+ * <p>
+ * {@link LogManager} 把每条聊天、命令与违规记录依次交给全部已启用的输出目标：文本日志 {@link LogPartitions}、
+ * 二进制日志 {@link BinaryLogStore} 与数据库 {@link DatabaseLogSink}。启用异步写入时三个方法都只在写入线程上调用，
+ * 否则可能来自多个事件线程，实现需要自行保证线程安全。
+ */
+public interface LogSink {
+
+    /**
+     * 写入一条记录，可以先缓冲，不要求立即落盘
+     *
+     * @param entry 日志记录
+     */
+    void write(LogEntry entry);
+
+    /**
+     * 把缓冲的记录全部落盘
+     */
+    void flush();
+
+    /**
+     * 落盘并释放资源，之后不再写入
+     */
+    void close();
+}
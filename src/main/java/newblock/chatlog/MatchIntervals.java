@@ -0,0 +1,95 @@
+package newblock.chatlog;
+
+import java.util.Arrays;
+
+/**
+ * 可复用的匹配区间集合，用于一次性构建替换结果
+ * <p>
+ * 不是线程安全的，每个线程应持有自己的实例。
+ */
+public final class MatchIntervals {
+    private long[] intervals = new long[16];   // 高 32 位为起始位置，低 32 位为结束位置
+    private int size;
+    private final StringBuilder builder = new StringBuilder(256);
+
+    /**
+     * 清空区间，准备处理下一条文本
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * 加入一个区间，空区间会被忽略
+     *
+     * @param start 起始位置（含）
+     * @param end 结束位置（不含）
+     */
+    public void add(int start, int end) {
+        if (end <= start) {
+            return;
+        }
+        if (size == intervals.length) {
+            intervals = Arrays.copyOf(intervals, size * 2);
+        }
+        intervals[size++] = ((long) start << 32) | end;
+    }
+
+    /**
+     * 把规范化文本中的区间换算为原文中的区间
+     *
+     * @param normalized 区间所在的规范化结果
+     */
+    public void remap(TextNormalizer.Normalized normalized) {
+        if (normalized.starts() == null) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            intervals[i] = normalized.toOriginal((int) (intervals[i] >>> 32), (int) intervals[i]);
+        }
+    }
+
+    /**
+     * 是否没有任何区间
+     *
+     * @return 没有区间返回true
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 合并相互重叠的区间，并用掩码覆盖原文中对应的字符
+     * <p>
+     * 只合并重叠的区间，首尾相接的区间各自从掩码开头填充，与逐个替换时的效果一致。
+     *
+     * @param text 原始文本
+     * @param mask 由替换字符重复而成的掩码，长度必须是替换字符串长度的整数倍
+     * @return 替换后的文本
+     */
+    public String apply(String text, char[] mask) {
+        Arrays.sort(intervals, 0, size);
+        StringBuilder sb = builder;
+        sb.setLength(0);
+
+        int copied = 0;
+        int i = 0;
+        while (i < size) {
+            int start = (int) (intervals[i] >>> 32);
+            int end = (int) intervals[i];
+            // 合并与当前区间重叠的后续区间
+            while (++i < size && (int) (intervals[i] >>> 32) < end) {
+                end = Math.max(end, (int) intervals[i]);
+            }
+            sb.append(text, copied, start);
+            for (int remaining = end - start; remaining > 0; ) {
+                int n = Math.min(remaining, mask.length);
+                sb.append(mask, 0, n);
+                remaining -= n;
+            }
+            copied = end;
+        }
+        sb.append(text, copied, text.length());
+        return sb.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package newblock.chatlog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界的消息判定缓存（LRU）
+ * <p>
+ * 刷屏与常用短语会在短时间内重复成千上万次，缓存其拦截结果与替换结果可以跳过完整的过滤扫描。
+ * 缓存按消息哈希分段，每段各自加锁并独立淘汰最久未使用的条目，事件线程之间不争用同一把锁。
+ * 每个条目记录写入时的过滤器代数，过滤器重新加载后旧条目自动失效。
+ */
+public class MessageVerdictCache {
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /**
+     * 一条缓存的判定
+     *
+     * @param generation 写入时的过滤器代数
+     * @param result 过滤结果
+     */
+    private record Entry(long generation, FilterManager.Result result) {
+    }
+
+    /**
+     * 创建消息判定缓存
+     *
+     * @param capacity 最大条目数
+     */
+    public MessageVerdictCache(int capacity) {
+        int perSegment = Math.max(1, (capacity + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param message 消息
+     * @param generation 当前过滤器代数
+     * @return 缓存的过滤结果，未命中或已失效时返回null
+     */
+    public FilterManager.Result get(String message, long generation) {
+        Segment segment = segmentFor(message);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(message);
+        }
+        if (entry == null || entry.generation() != generation) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.result();
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param message 消息
+     * @param generation 计算结果时的过滤器代数
+     * @param result 过滤结果
+     */
+    public void put(String message, long generation, FilterManager.Result result) {
+        Segment segment = segmentFor(message);
+        synchronized (segment) {
+            segment.put(message, new Entry(generation, result));
+        }
+    }
+
+    /**
+     * 获取命中次数
+     *
+     * @return 命中次数
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 获取未命中次数
+     *
+     * @return 未命中次数
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 获取因容量不足而淘汰的条目数
+     *
+     * @return 淘汰数
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * 获取当前条目数
+     *
+     * @return 条目数
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String message) {
+        int h = message.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * 按访问顺序排列、超出容量时淘汰最久未使用条目的分段
+     */
+    private final class Segment extends LinkedHashMap<String, Entry> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 处罚命令的调度
+ * <p>
+ * 同一玩家同一类违规在窗口内只执行一次处罚命令，刷屏的玩家不会在控制台和后端服务器上堆出几十条相同的 /tempmute 或 kick。
+ * 窗口外再次违规时按 punishment-escalation 逐级加重。命令在单独的单线程执行器上依次执行，队列有上限，
+ * 满时丢弃并计数，不会拖住聊天线程。
+ */
+public class PunishmentScheduler {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    /**
+     * 违规类型，各自独立去重
+     */
+    public enum Type {
+        CHAT,       // 聊天或命令参数包含违禁词
+        USERNAME    // 用户名包含违禁词
+    }
+
+    private final Logger logger;
+    private final ChatlogConfig config;
+    private final Consumer<String> console;
+    private final ThreadPoolExecutor executor;
+    private final Map<Key, Offender> offenders;
+    private final LongAdder dispatched;
+    private final LongAdder deduplicated;
+    private final LongAdder dropped;
+
+    /**
+     * 创建处罚调度器
+     *
+     * @param logger 日志记录器
+     * @param config 配置，窗口与加重规则在重新加载后立即生效
+     * @param console 以控制台身份执行命令，执行完成后返回
+     * @param queueSize 等待执行的命令上限
+     */
+    public PunishmentScheduler(Logger logger, ChatlogConfig config, Consumer<String> console, int queueSize) {
+        this.logger = logger;
+        this.config = config;
+        this.console = console;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+                    Thread thread = new Thread(r, "ChatLog-Punishment");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.offenders = new ConcurrentHashMap<>();
+        this.dispatched = new LongAdder();
+        this.deduplicated = new LongAdder();
+        this.dropped = new LongAdder();
+    }
+
+    /**
+     * 为一次违规安排处罚
+     *
+     * @param uuid 玩家 UUID
+     * @param playerName 玩家名称
+     * @param type 违规类型
+     * @return 将要执行的命令；窗口内已处罚过或队列已满时返回null
+     */
+    public String punish(UUID uuid, String playerName, Type type) {
+        long now = System.currentTimeMillis();
+        Offender offender = offenders.computeIfAbsent(new Key(uuid, type), k -> new Offender());
+        String cmd;
+        // 命令入队后才记为已处罚：队列满被丢弃时不开始去重窗口，也不提升处罚等级
+        synchronized (offender) {
+            int level = offender.offend(now, config.getPunishmentWindowMillis(), config.getPunishmentEscalationResetMillis());
+            if (level < 0) {
+                deduplicated.increment();
+                return null;
+            }
+            cmd = commandFor(type, level).replace("%player%", playerName);
+            try {
+                executor.execute(() -> run(cmd));
+            } catch (RejectedExecutionException e) {
+                dropped.increment();
+                logger.warn("处罚命令队列已满，丢弃: {}", cmd);
+                return null;
+            }
+            offender.punished(now, level);
+        }
+        dispatched.increment();
+        return cmd;
+    }
+
+    private String commandFor(Type type, int level) {
+        if (type == Type.USERNAME) {
+            return config.getUserNamePunishmentCommand();
+        }
+        List<String> escalation = config.getPunishmentEscalation();
+        if (level == 0 || escalation.isEmpty()) {
+            return config.getPunishmentCommand();
+        }
+        return escalation.get(Math.min(level, escalation.size()) - 1);
+    }
+
+    private void run(String cmd) {
+        try {
+            console.accept(cmd);
+        } catch (Exception e) {
+            logger.error("执行处罚命令时发生错误: {}", cmd, e);
+        }
+    }
+
+    /**
+     * 移除已超过加重重置时间的违规记录
+     */
+    public void prune() {
+        long now = System.currentTimeMillis();
+        long resetMillis = config.getPunishmentEscalationResetMillis();
+        offenders.values().removeIf(offender -> offender.isExpired(now, resetMillis));
+    }
+
+    /**
+     * 停止执行器，等待已排队的命令执行完毕
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("关闭时仍有 {} 条处罚命令未执行", executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 获取等待执行的命令数
+     *
+     * @return 命令数
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 获取已安排执行的命令数
+     *
+     * @return 命令数
+     */
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    /**
+     * 获取因窗口内已处罚而合并的违规数
+     *
+     * @return 违规数
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    /**
+     * 获取因队列已满而丢弃的命令数
+     *
+     * @return 命令数
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private record Key(UUID uuid, Type type) {
+    }
+
+    /**
+     * 一名玩家某类违规的处罚记录
+     */
+    private static final class Offender {
+        private long lastPunished = Long.MIN_VALUE;
+        private long lastOffense;
+        private int level = -1;                 // 最近一次执行的处罚等级
+
+        /**
+         * 记录一次违规，处罚命令入队后由调用方调用 {@link #punished} 确认
+         *
+         * @return 本次应执行的处罚等级，从 0 开始；窗口内已处罚过时返回 -1
+         */
+        synchronized int offend(long now, long windowMillis, long resetMillis) {
+            if (now - lastOffense > resetMillis) {
+                level = -1;
+            }
+            lastOffense = now;
+            if (lastPunished != Long.MIN_VALUE && now - lastPunished < windowMillis) {
+                return -1;
+            }
+            return level + 1;
+        }
+
+        /**
+         * 记录已执行的处罚，开始去重窗口
+         */
+        synchronized void punished(long now, int punishedLevel) {
+            lastPunished = now;
+            level = punishedLevel;
+        }
+
+        synchronized boolean isExpired(long now, long resetMillis) {
+            return now - lastOffense > resetMillis;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package newblock.chatlog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按玩家与全局限制聊天频率（令牌桶，GCRA 实现）
+ * <p>
+ * 每个桶只有一个 {@link AtomicLong}，保存"理论到达时间"：每放行一条消息推后一个发放间隔，
+ * 超前当前时间超过桶容量时拒绝。判断只需一次比较与一次 CAS，不加锁。
+ * 被拒绝的消息只计数，由 {@link #drain()} 定期汇总为一行日志，刷屏时不会产生 N 行记录。
+ */
+public class RateLimiter {
+
+    /**
+     * 判定结果
+     */
+    public enum Verdict {
+        ALLOWED,
+        LIMITED,            // 超出该玩家的频率，且是本汇总周期内第一次，调用方可以提示玩家
+        SUPPRESSED          // 本周期内已经提示过，或超出全服总频率，静默拦截
+    }
+
+    /**
+     * 一名玩家在汇总周期内被拦截的条数
+     *
+     * @param playerName 玩家名称
+     * @param serverName 最近一次被拦截时所在的服务器
+     * @param dropped 被拦截的条数
+     */
+    public record Dropped(String playerName, String serverName, int dropped) {
+    }
+
+    /**
+     * 限流参数，重新加载时整体替换
+     */
+    private record Settings(long playerInterval, long playerCapacity, long globalInterval, long globalCapacity) {
+    }
+
+    private final Map<UUID, Bucket> buckets;
+    private final AtomicLong globalTat;
+    private final AtomicLong globalDropped;
+    private volatile Settings settings;
+
+    /**
+     * 创建限流器，未调用 {@link #configure} 前不限流
+     */
+    public RateLimiter() {
+        this.buckets = new ConcurrentHashMap<>();
+        this.globalTat = new AtomicLong(Long.MIN_VALUE);
+        this.globalDropped = new AtomicLong();
+        this.settings = new Settings(0, 0, 0, 0);
+    }
+
+    /**
+     * 设置限流参数
+     *
+     * @param playerPerSecond 每名玩家每秒允许的条数，0 表示不限
+     * @param playerBurst 每名玩家允许的突发条数
+     * @param globalPerSecond 全服每秒允许的条数，0 表示不限
+     * @param globalBurst 全服允许的突发条数
+     */
+    public void configure(double playerPerSecond, int playerBurst, double globalPerSecond, int globalBurst) {
+        long playerInterval = playerPerSecond > 0 ? (long) (1_000_000_000L / playerPerSecond) : 0;
+        long globalInterval = globalPerSecond > 0 ? (long) (1_000_000_000L / globalPerSecond) : 0;
+        settings = new Settings(playerInterval, playerInterval * Math.max(1, playerBurst),
+                globalInterval, globalInterval * Math.max(1, globalBurst));
+    }
+
+    /**
+     * 判断玩家的一条消息是否放行，被拒绝时计入汇总
+     *
+     * @param uuid 玩家 UUID
+     * @param playerName 玩家名称
+     * @param serverName 服务器名称
+     * @return 判定结果
+     */
+    public Verdict acquire(UUID uuid, String playerName, String serverName) {
+        Settings s = settings;
+        if (s.playerInterval() == 0 && s.globalInterval() == 0) {
+            return Verdict.ALLOWED;
+        }
+        long now = System.nanoTime();
+        if (s.playerInterval() > 0) {
+            Bucket bucket = buckets.get(uuid);
+            if (bucket == null) {
+                Bucket created = new Bucket(playerName);
+                bucket = buckets.putIfAbsent(uuid, created);
+                if (bucket == null) {
+                    bucket = created;
+                }
+            }
+            if (!tryAcquire(bucket.tat, now, s.playerInterval(), s.playerCapacity())) {
+                bucket.serverName = serverName;
+                return bucket.dropped.incrementAndGet() == 1 ? Verdict.LIMITED : Verdict.SUPPRESSED;
+            }
+        }
+        if (s.globalInterval() > 0 && !tryAcquire(globalTat, now, s.globalInterval(), s.globalCapacity())) {
+            globalDropped.incrementAndGet();
+            return Verdict.SUPPRESSED;
+        }
+        return Verdict.ALLOWED;
+    }
+
+    private static boolean tryAcquire(AtomicLong tat, long now, long interval, long capacity) {
+        while (true) {
+            long current = tat.get();
+            long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + interval;
+            if (next - now > capacity) {
+                return false;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 取出并清零各玩家在本周期内被拦截的条数
+     *
+     * @return 有拦截记录的玩家
+     */
+    public List<Dropped> drain() {
+        List<Dropped> result = new ArrayList<>();
+        for (Bucket bucket : buckets.values()) {
+            int dropped = bucket.dropped.getAndSet(0);
+            if (dropped > 0) {
+                result.add(new Dropped(bucket.playerName, bucket.serverName, dropped));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 取出并清零本周期内因全服频率被拦截的条数
+     *
+     * @return 条数
+     */
+    public long drainGlobal() {
+        return globalDropped.getAndSet(0);
+    }
+
+    /**
+     * 移除玩家的令牌桶
+     *
+     * @param uuid 玩家 UUID
+     * @return 本周期内尚未汇总的拦截记录，没有时返回null
+     */
+    public Dropped evict(UUID uuid) {
+        Bucket bucket = buckets.remove(uuid);
+        if (bucket == null) {
+            return null;
+        }
+        int dropped = bucket.dropped.getAndSet(0);
+        return dropped > 0 ? new Dropped(bucket.playerName, bucket.serverName, dropped) : null;
+    }
+
+    /**
+     * 一名玩家的令牌桶
+     */
+    private static final class Bucket {
+        final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);   // 理论到达时间（纳秒）
+        final AtomicInteger dropped = new AtomicInteger();
+        final String playerName;
+        volatile String serverName;
+
+        Bucket(String playerName) {
+            this.playerName = playerName;
+        }
+    }
+}
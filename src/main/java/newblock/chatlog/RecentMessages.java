@@ -0,0 +1,118 @@
+package newblock.chatlog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每个在线玩家最近发送的若干条聊天与命令
+ * <p>
+ * 每个玩家一个定长环形缓冲区，创建时一次分配好，之后只覆盖最旧的槽位，只保存对已有字符串的引用，
+ * 数千名玩家同时在线时内存也有上限。发生违规时取出快照写入 warn.log，作为违规前的上下文，
+ * 不需要再回头读取 chat.log。缓冲区在玩家登录时创建、断开连接时移除，记录时不会为已下线的玩家重新创建。
+ */
+public class RecentMessages {
+    private final int capacity;
+    private final Map<UUID, Ring> rings;
+
+    /**
+     * 创建最近消息缓存
+     *
+     * @param capacity 每个玩家保留的条数，0 表示不保留
+     */
+    public RecentMessages(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.rings = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 为登录的玩家创建缓冲区
+     *
+     * @param uuid 玩家 UUID
+     */
+    public void track(UUID uuid) {
+        if (capacity > 0) {
+            rings.computeIfAbsent(uuid, k -> new Ring(capacity));
+        }
+    }
+
+    /**
+     * 记录一条聊天或命令；玩家没有缓冲区（未登录或已断开连接）时忽略，
+     * 过滤线程上排队的任务在玩家下线后才完成时不会留下无人移除的缓冲区
+     *
+     * @param uuid 玩家 UUID
+     * @param serverName 服务器名称
+     * @param content 聊天内容或命令（不含斜杠）
+     * @param command 是否为命令
+     */
+    public void record(UUID uuid, String serverName, String content, boolean command) {
+        Ring ring = rings.get(uuid);
+        if (ring != null) {
+            ring.add(System.currentTimeMillis(), serverName, content, command);
+        }
+    }
+
+    /**
+     * 取出玩家最近的记录，按时间先后排列，类型为 {@link LogEntry.Type#CONTEXT}
+     *
+     * @param uuid 玩家 UUID
+     * @param playerName 玩家名称
+     * @return 记录列表，没有记录时为空
+     */
+    public List<LogEntry> snapshot(UUID uuid, String playerName) {
+        Ring ring = rings.get(uuid);
+        return ring == null ? List.of() : ring.snapshot(playerName);
+    }
+
+    /**
+     * 移除玩家的记录
+     *
+     * @param uuid 玩家 UUID
+     */
+    public void evict(UUID uuid) {
+        rings.remove(uuid);
+    }
+
+    /**
+     * 定长环形缓冲区，同一玩家的事件可能来自不同线程，读写都持有自身的锁
+     */
+    private static final class Ring {
+        private final long[] timestamps;
+        private final String[] servers;
+        private final String[] contents;
+        private final boolean[] commands;
+        private int next;   // 下一条写入的槽位
+        private int size;
+
+        Ring(int capacity) {
+            this.timestamps = new long[capacity];
+            this.servers = new String[capacity];
+            this.contents = new String[capacity];
+            this.commands = new boolean[capacity];
+        }
+
+        synchronized void add(long timestamp, String server, String content, boolean command) {
+            timestamps[next] = timestamp;
+            servers[next] = server;
+            contents[next] = content;
+            commands[next] = command;
+            next = next + 1 == contents.length ? 0 : next + 1;
+            if (size < contents.length) {
+                size++;
+            }
+        }
+
+        synchronized List<LogEntry> snapshot(String playerName) {
+            List<LogEntry> entries = new ArrayList<>(size);
+            int start = next - size < 0 ? next - size + contents.length : next - size;
+            for (int i = 0; i < size; i++) {
+                int slot = (start + i) % contents.length;
+                String content = commands[slot] ? "/" + contents[slot] : contents[slot];
+                entries.add(new LogEntry(LogEntry.Type.CONTEXT, timestamps[slot], servers[slot], playerName, content));
+            }
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 限制单条正则在一条消息上的执行步数
+ * <p>
+ * 嵌套量词之类的规则遇到精心构造的消息会发生灾难性回溯，让事件线程卡住数秒。
+ * 执行时把文本包装成计步的 {@link CharSequence}，正则引擎每读取一个字符计一步，
+ * 超出预算即中止本次匹配，记录是哪条规则，并按策略把结果视为命中（fail-closed）
+ * 或未命中（fail-open）。构建完成后不可变，可在多个线程间共享。
+ */
+public final class RegexBudget {
+
+    /**
+     * 超出预算时的处理策略
+     */
+    public enum FailPolicy {
+        OPEN,   // 视为未命中，消息照常放行
+        CLOSED  // 视为命中，按违禁词处理
+    }
+
+    /**
+     * 不限制步数
+     */
+    public static final RegexBudget UNLIMITED = new RegexBudget(null, 0, FailPolicy.OPEN);
+
+    private final Logger logger;
+    private final long maxSteps;
+    private final FailPolicy policy;
+    private final Map<String, AtomicLong> exceeded;
+
+    /**
+     * 创建执行预算
+     *
+     * @param logger 日志记录器
+     * @param maxSteps 单条规则在一条消息上最多读取的字符次数，0 表示不限
+     * @param policy 超出预算时的处理策略
+     */
+    public RegexBudget(Logger logger, long maxSteps, FailPolicy policy) {
+        this.logger = logger;
+        this.maxSteps = Math.max(0, maxSteps);
+        this.policy = policy;
+        this.exceeded = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 在预算内查找规则
+     *
+     * @param pattern 规则
+     * @param text 文本
+     * @return 是否找到；超出预算时按策略返回
+     */
+    public boolean find(Pattern pattern, String text) {
+        if (maxSteps == 0) {
+            return pattern.matcher(text).find();
+        }
+        try {
+            return pattern.matcher(new StepLimitedText(text, maxSteps)).find();
+        } catch (BudgetExceeded e) {
+            recordExceeded(pattern);
+            return policy == FailPolicy.CLOSED;
+        }
+    }
+
+    /**
+     * 在预算内收集规则的全部匹配区间。超出预算时，fail-closed 把整段文本视为命中，
+     * fail-open 只保留已找到的区间
+     *
+     * @param pattern 规则
+     * @param text 文本
+     * @param out 接收区间的集合
+     * @return 加入的区间数
+     */
+    public int collect(Pattern pattern, String text, MatchIntervals out) {
+        Matcher matcher = pattern.matcher(maxSteps == 0 ? text : new StepLimitedText(text, maxSteps));
+        int found = 0;
+        try {
+            while (matcher.find()) {
+                out.add(matcher.start(), matcher.end());
+                found++;
+            }
+        } catch (BudgetExceeded e) {
+            recordExceeded(pattern);
+            if (policy == FailPolicy.CLOSED) {
+                out.add(0, text.length());
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private void recordExceeded(Pattern pattern) {
+        long count = exceeded.computeIfAbsent(pattern.pattern(), k -> new AtomicLong()).incrementAndGet();
+        // 只在第 1、2、4、8... 次时输出，避免刷屏攻击把控制台刷满
+        if (logger != null && Long.bitCount(count) == 1) {
+            logger.warn("正则执行超出 {} 步的预算，已中止（第 {} 次，按 {} 处理）: {}",
+                    maxSteps, count, policy, pattern.pattern());
+        }
+    }
+
+    /**
+     * 获取超出过预算的规则及次数
+     *
+     * @return 规则 -> 次数
+     */
+    public Map<String, Long> getExceeded() {
+        Map<String, Long> result = new TreeMap<>();
+        exceeded.forEach((k, v) -> result.put(k, v.get()));
+        return result;
+    }
+
+    /**
+     * 获取单条规则的步数上限
+     *
+     * @return 步数，0 表示不限
+     */
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * 获取超出预算时的处理策略
+     *
+     * @return 处理策略
+     */
+    public FailPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 粗略判断正则是否容易发生灾难性回溯：被无上限量词修饰的分组内部又含有无上限量词
+     * 或分支（如 {@code (a+)+}、{@code (a|aa)*}）。只用于加载时提示，可能误报也可能漏报
+     *
+     * @param regex 正则表达式
+     * @return 可能发生灾难性回溯时返回true
+     */
+    public static boolean isBacktrackingProne(String regex) {
+        Deque<boolean[]> groups = new ArrayDeque<>();   // 每层分组内是否含有无上限量词或分支
+        boolean[] top = new boolean[1];
+        boolean lastGroupRisky = false;                 // 刚关闭的分组内含无上限量词或分支
+        int n = regex.length();
+        for (int i = 0; i < n; i++) {
+            char c = regex.charAt(i);
+            boolean closedGroup = false;
+            switch (c) {
+                case '\\' -> i++;
+                case '[' -> i = skipClass(regex, i);
+                case '(' -> {
+                    groups.push(top);
+                    top = new boolean[1];
+                }
+                case ')' -> {
+                    if (!groups.isEmpty()) {
+                        lastGroupRisky = top[0];
+                        boolean inner = top[0];
+                        top = groups.pop();
+                        top[0] |= inner;
+                        closedGroup = true;
+                    }
+                }
+                case '|' -> top[0] = true;
+                default -> {
+                }
+            }
+            if (closedGroup && i + 1 < n) {
+                int q = unboundedQuantifierEnd(regex, i + 1);
+                if (q > 0) {
+                    boolean possessive = q < n && regex.charAt(q) == '+';
+                    if (lastGroupRisky && !possessive) {
+                        return true;
+                    }
+                    top[0] = true;
+                    i = q - 1;
+                }
+                continue;
+            }
+            if (!closedGroup && c != '(' && c != '|' && i + 1 < n && unboundedQuantifierEnd(regex, i + 1) > 0) {
+                top[0] = true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 如果 from 处是无上限量词（{@code * + {n,}}），返回量词之后的位置，否则返回0
+     */
+    private static int unboundedQuantifierEnd(String regex, int from) {
+        char c = regex.charAt(from);
+        if (c == '*' || c == '+') {
+            return from + 1;
+        }
+        if (c == '{') {
+            int close = regex.indexOf('}', from);
+            if (close > 0 && regex.substring(from + 1, close).matches("\\d+,")) {
+                return close + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int skipClass(String regex, int open) {
+        int i = open + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * 超出预算时抛出，不记录堆栈
+     */
+    private static final class BudgetExceeded extends RuntimeException {
+        private static final BudgetExceeded INSTANCE = new BudgetExceeded();
+
+        private BudgetExceeded() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * 每读取一个字符计一步的文本包装
+     */
+    private static final class StepLimitedText implements CharSequence {
+        private final String text;
+        private long remaining;
+
+        StepLimitedText(String text, long maxSteps) {
+            this.text = text;
+            this.remaining = maxSteps;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--remaining < 0) {
+                throw BudgetExceeded.INSTANCE;
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
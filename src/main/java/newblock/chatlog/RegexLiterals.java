@@ -0,0 +1,319 @@
+package newblock.chatlog;
+
+/**
+ * 从正则表达式中提取字面量
+ * <p>
+ * 只做保守分析：无法确定的语法一律视为"没有字面量"，
+ * 这样调用方跳过某条正则时绝不会漏判。
+ */
+public final class RegexLiterals {
+    private static final String REGEX_META = "\\^$.|?*+()[]{}";
+
+    private RegexLiterals() {
+    }
+
+    /**
+     * 若正则表达式只表示一个固定字符串，返回该字符串
+     * <p>
+     * 反斜杠转义的非字母数字字符（如 {@code \.}）视为普通字符；
+     * 含代理对的规则交给正则处理，以免与按码点匹配的语义不一致。
+     *
+     * @param regex 正则表达式
+     * @return 对应的字面量，不是纯字面量时返回null
+     */
+    public static String literalOf(String regex) {
+        StringBuilder sb = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (Character.isSurrogate(c)) {
+                return null;
+            }
+            if (c == '\\') {
+                if (++i >= regex.length()) {
+                    return null;
+                }
+                c = regex.charAt(i);
+                if (Character.isLetterOrDigit(c) || Character.isSurrogate(c)) {
+                    return null;
+                }
+            } else if (REGEX_META.indexOf(c) >= 0) {
+                return null;
+            }
+            sb.append(c);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * 把字符串转义为只匹配它自身的正则表达式，结果可被 {@link #literalOf} 还原
+     *
+     * @param literal 字符串
+     * @return 正则表达式
+     */
+    public static String escape(String literal) {
+        StringBuilder sb = new StringBuilder(literal.length() + 8);
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (REGEX_META.indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 提取任何匹配都必须包含的最长字面量片段
+     * <p>
+     * 例如 {@code b[a@]dw(o|0)rd} 的任何匹配都包含 {@code dw}。
+     * 顶层出现 {@code |}、{@code \Q}、或除 {@code i} 以外的内联标志时放弃提取。
+     *
+     * @param regex 正则表达式
+     * @return 必需的字面量片段，无法确定时返回null
+     */
+    public static String requiredFactor(String regex) {
+        StringBuilder run = new StringBuilder();
+        String best = null;
+        boolean lastIsLiteral = false;   // run 的最后一个字符是否为单独的字面量原子
+        int len = regex.length();
+        int i = 0;
+        while (i < len) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '|':
+                    return null;
+                case '(': {
+                    if (i + 1 < len && regex.charAt(i + 1) == '?' && !onlyCaseInsensitiveFlags(regex, i + 2)) {
+                        return null;
+                    }
+                    int end = skipGroup(regex, i);
+                    if (end < 0) {
+                        return null;
+                    }
+                    best = longer(best, run);
+                    run.setLength(0);
+                    lastIsLiteral = false;
+                    i = end;
+                    continue;
+                }
+                case '[': {
+                    int end = skipClass(regex, i);
+                    if (end < 0) {
+                        return null;
+                    }
+                    best = longer(best, run);
+                    run.setLength(0);
+                    lastIsLiteral = false;
+                    i = end;
+                    continue;
+                }
+                case '?':
+                case '*':
+                case '{':
+                case '+': {
+                    boolean keepLast = c == '+';
+                    int end = i + 1;
+                    if (c == '{') {
+                        int close = regex.indexOf('}', i);
+                        if (close < 0) {
+                            return null;
+                        }
+                        keepLast = minRepeat(regex.substring(i + 1, close)) >= 1;
+                        end = close + 1;
+                    }
+                    // 贪婪、勉强、占有三种量词后缀
+                    if (end < len && (regex.charAt(end) == '?' || regex.charAt(end) == '+')) {
+                        end++;
+                    }
+                    if (lastIsLiteral && !keepLast) {
+                        run.setLength(run.length() - 1);
+                    }
+                    best = longer(best, run);
+                    run.setLength(0);
+                    lastIsLiteral = false;
+                    i = end;
+                    continue;
+                }
+                case '\\': {
+                    if (i + 1 >= len) {
+                        return null;
+                    }
+                    char next = regex.charAt(i + 1);
+                    if (next == 'Q') {
+                        return null;
+                    }
+                    if (Character.isLetterOrDigit(next) || Character.isSurrogate(next)) {
+                        // 字符类、边界、反向引用、数值转义等
+                        best = longer(best, run);
+                        run.setLength(0);
+                        lastIsLiteral = false;
+                        i = skipEscape(regex, i);
+                        if (i < 0) {
+                            return null;
+                        }
+                    } else {
+                        run.append(next);
+                        lastIsLiteral = true;
+                        i += 2;
+                    }
+                    continue;
+                }
+                case '.':
+                case '^':
+                case '$':
+                    best = longer(best, run);
+                    run.setLength(0);
+                    lastIsLiteral = false;
+                    i++;
+                    continue;
+                default:
+                    if (Character.isSurrogate(c)) {
+                        best = longer(best, run);
+                        run.setLength(0);
+                        lastIsLiteral = false;
+                    } else {
+                        run.append(c);
+                        lastIsLiteral = true;
+                    }
+                    i++;
+            }
+        }
+        return longer(best, run);
+    }
+
+    private static String longer(String best, StringBuilder run) {
+        if (run.length() > 0 && (best == null || run.length() > best.length())) {
+            return run.toString();
+        }
+        return best;
+    }
+
+    private static boolean onlyCaseInsensitiveFlags(String regex, int from) {
+        for (int i = from; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == ')' || c == ':') {
+                return true;
+            }
+            if (c != 'i' && c != '-') {
+                // 环视、命名分组或会改变字面量含义的标志（如 x、u）
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 返回与 {@code (} 对应的 {@code )} 之后的位置，语法不完整时返回 -1
+     */
+    private static int skipGroup(String regex, int open) {
+        int depth = 0;
+        for (int i = open; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i++;
+            } else if (c == '[') {
+                int end = skipClass(regex, i);
+                if (end < 0) {
+                    return -1;
+                }
+                i = end - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 返回以字母或数字开头的转义序列（含其参数）之后的位置，语法不完整时返回 -1
+     */
+    private static int skipEscape(String regex, int backslash) {
+        int len = regex.length();
+        int i = backslash + 1;
+        char c = regex.charAt(i++);
+        switch (c) {
+            case '0':
+                // 八进制 \0n、\0nn、\0mnn
+                for (int k = 0; k < 3 && i < len && regex.charAt(i) >= '0' && regex.charAt(i) <= '7'; k++) {
+                    i++;
+                }
+                return i;
+            case 'x':
+                if (i < len && regex.charAt(i) == '{') {
+                    int close = regex.indexOf('}', i);
+                    return close < 0 ? -1 : close + 1;
+                }
+                return Math.min(i + 2, len);
+            case 'u':
+                return Math.min(i + 4, len);
+            case 'c':
+                return Math.min(i + 1, len);
+            case 'k': {
+                int close = regex.indexOf('>', i);
+                return close < 0 ? -1 : close + 1;
+            }
+            case 'p':
+            case 'P':
+            case 'N':
+            case 'b':
+            case 'B':
+                if (i < len && regex.charAt(i) == '{') {
+                    int close = regex.indexOf('}', i);
+                    return close < 0 ? -1 : close + 1;
+                }
+                return c == 'p' || c == 'P' ? Math.min(i + 1, len) : i;
+            default:
+                if (c >= '1' && c <= '9') {
+                    // 反向引用
+                    while (i < len && Character.isDigit(regex.charAt(i))) {
+                        i++;
+                    }
+                }
+                return i;
+        }
+    }
+
+    /**
+     * 返回与 {@code [} 对应的 {@code ]} 之后的位置，语法不完整时返回 -1
+     */
+    private static int skipClass(String regex, int open) {
+        int depth = 1;
+        int i = open + 1;
+        // 紧跟在 [ 或 [^ 之后的 ] 是普通字符
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int minRepeat(String bounds) {
+        int comma = bounds.indexOf(',');
+        String min = comma >= 0 ? bounds.substring(0, comma) : bounds;
+        try {
+            return Integer.parseInt(min.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -1,11 +1,37 @@
 package newblock.chatlog;
 
+import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.Player;
 import org.slf4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
 public class ReloadCommand implements SimpleCommand {
+    private static final int TOP_HITS = 10;
+    private static final int SEARCH_PAGE_SIZE = 10;
+
     private final Logger logger;
     private final Chatlog plugin;
+    private final Map<String, SearchSession> searches = new ConcurrentHashMap<>();  // 每个命令来源最近一次搜索
+
+    /**
+     * 一个命令来源最近一次搜索，完成前 outcome 为null
+     */
+    private static final class SearchSession {
+        volatile LogSearcher.Search search;
+        volatile LogSearcher.Outcome outcome;
+    }
 
     public ReloadCommand(Logger logger, Chatlog plugin) {
         this.logger = logger;
@@ -22,10 +48,22 @@ public class ReloadCommand implements SimpleCommand {
         }
 
         if (invocation.arguments()[0].equalsIgnoreCase("reload")) {
-            plugin.reloadConfig();
-            invocation.source().sendMessage(net.kyori.adventure.text.Component.text(
-                plugin.getMessage("plugin.reload")
-            ));
+            boolean started = plugin.reloadConfigAsync(() ->
+                invocation.source().sendMessage(net.kyori.adventure.text.Component.text(
+                    plugin.getMessage("plugin.reload")
+                ))
+            );
+            if (!started) {
+                invocation.source().sendMessage(net.kyori.adventure.text.Component.text(
+                    plugin.getMessage("plugin.reload_busy")
+                ));
+            }
+        } else if (invocation.arguments()[0].equalsIgnoreCase("stats")) {
+            sendStats(invocation.source());
+        } else if (invocation.arguments()[0].equalsIgnoreCase("search")) {
+            search(invocation.source(), invocation.arguments());
+        } else if (invocation.arguments()[0].equalsIgnoreCase("convert")) {
+            convert(invocation.source(), invocation.arguments());
         } else {
             invocation.source().sendMessage(net.kyori.adventure.text.Component.text(
                 plugin.getMessage("plugin.reload_usage")
@@ -33,6 +71,236 @@ public class ReloadCommand implements SimpleCommand {
         }
     }
 
+    private void sendStats(CommandSource source) {
+        FilterManager filterManager = plugin.getFilterManager();
+        LogManager logManager = plugin.getLogManager();
+        List<String> lines = new ArrayList<>();
+        lines.add(plugin.getMessage("stats.header"));
+        lines.add(plugin.getMessage("stats.messages",
+                filterManager.getCheckedCount(), filterManager.getBlockedCount(), filterManager.getReplacedCount()));
+        MessageVerdictCache cache = filterManager.getMessageCache();
+        if (cache != null) {
+            long lookups = cache.getHits() + cache.getMisses();
+            lines.add(plugin.getMessage("stats.cache", cache.size(),
+                    oneDecimal(lookups == 0 ? 0.0 : cache.getHits() * 100.0 / lookups), cache.getEvictions()));
+        }
+        lines.add(formatLatency("stats.latency_check", filterManager.getCheckLatency()));
+        lines.add(formatLatency("stats.latency_forbidden", filterManager.getForbiddenLatency()));
+        lines.add(formatLatency("stats.latency_replace", filterManager.getReplaceLatency()));
+        lines.add(formatLatency("stats.latency_write", logManager.getWriteLatency()));
+        lines.add(plugin.getMessage("stats.log", logManager.getQueueDepth(), logManager.getDroppedCount(),
+                oneDecimal(logManager.getBytesWritten() / 1024.0)));
+        FilterExecutor filterExecutor = plugin.getFilterExecutor();
+        if (filterExecutor != null) {
+            lines.add(plugin.getMessage("stats.filter_executor", filterExecutor.getQueueDepth(), filterExecutor.getTimedOutCount(), filterExecutor.getInlineCount()));
+        }
+        PunishmentScheduler punishments = plugin.getPunishmentScheduler();
+        lines.add(plugin.getMessage("stats.punishment", punishments.getDispatchedCount(), punishments.getDeduplicatedCount(),
+                punishments.getQueueDepth(), punishments.getDroppedCount()));
+        appendTopHits(lines, "stats.top_hits_forbidden", filterManager.getForbiddenMatcher());
+        FilterMatcher replaceMatcher = filterManager.getReplaceMatcher();
+        if (replaceMatcher != null) {
+            appendTopHits(lines, "stats.top_hits_replace", replaceMatcher);
+        }
+        for (String line : lines) {
+            source.sendMessage(net.kyori.adventure.text.Component.text(line));
+        }
+    }
+
+    /**
+     * /chatlog search [p:玩家] [t:时间范围] [正则] 在线程池中搜索日志，完成后显示第一页；
+     * 启用了二进制日志且限定了玩家或时间时按二进制日志的索引搜索，否则扫描文本日志；
+     * /chatlog search page &lt;页码&gt; 翻页，/chatlog search cancel 取消正在进行的搜索
+     */
+    private void search(CommandSource source, String[] args) {
+        String key = source instanceof Player player ? player.getUniqueId().toString() : "console";
+        SearchSession session = searches.get(key);
+        if (args.length < 2) {
+            send(source, "search.usage");
+            return;
+        }
+        if (args[1].equalsIgnoreCase("cancel")) {
+            if (session != null && session.outcome == null && session.search != null) {
+                session.search.cancel();
+                send(source, "search.cancelled");
+            } else {
+                send(source, "search.not_running");
+            }
+            return;
+        }
+        if (args[1].equalsIgnoreCase("page") && args.length == 3) {
+            if (session == null || session.outcome == null) {
+                send(source, "search.no_results");
+                return;
+            }
+            try {
+                sendPage(source, session.outcome, Integer.parseInt(args[2]));
+            } catch (NumberFormatException e) {
+                send(source, "search.invalid_page");
+            }
+            return;
+        }
+        if (session != null && session.outcome == null) {
+            send(source, "search.busy");
+            return;
+        }
+
+        LogSearcher.Query query;
+        try {
+            query = LogSearcher.Query.parse(Arrays.asList(args).subList(1, args.length), ZoneId.systemDefault());
+        } catch (LogSearcher.InvalidQueryException e) {
+            send(source, e.getKey(), e.getArgs());
+            return;
+        }
+        send(source, "search.started");
+        SearchSession started = new SearchSession();
+        searches.put(key, started);
+        Consumer<LogSearcher.Outcome> onComplete = outcome -> {
+            started.outcome = outcome;
+            sendPage(source, outcome, 1);
+        };
+        BinaryLogStore binaryLog = plugin.getLogManager().getBinaryLog();
+        boolean indexed = query.player() != null || query.from() != Long.MIN_VALUE || query.to() != Long.MAX_VALUE;
+        // 限定了玩家或时间时走二进制日志的索引，只读取相关的块
+        started.search = binaryLog != null && indexed
+                ? plugin.getLogSearcher().start(query, binaryLog, onComplete)
+                : plugin.getLogSearcher().start(query, plugin.getLogManager().getSearchableFiles(), onComplete);
+    }
+
+    private void sendPage(CommandSource source, LogSearcher.Outcome outcome, int page) {
+        List<LogSearcher.Hit> hits = outcome.hits();
+        int pages = Math.max(1, (hits.size() + SEARCH_PAGE_SIZE - 1) / SEARCH_PAGE_SIZE);
+        int current = Math.max(1, Math.min(page, pages));
+        List<String> lines = new ArrayList<>();
+        String status = outcome.timedOut() ? plugin.getMessage("search.timed_out")
+                : outcome.cancelled() ? plugin.getMessage("search.partial_cancelled")
+                : outcome.truncated() ? plugin.getMessage("search.truncated", hits.size()) : "";
+        lines.add(plugin.getMessage("search.header", hits.size(), oneDecimal(outcome.bytes() / 1024.0 / 1024.0),
+                outcome.elapsedMillis(), status));
+        int from = (current - 1) * SEARCH_PAGE_SIZE;
+        for (LogSearcher.Hit hit : hits.subList(Math.min(from, hits.size()), Math.min(from + SEARCH_PAGE_SIZE, hits.size()))) {
+            lines.add(plugin.getMessage("search.hit", hit.file(), hit.line()));
+        }
+        if (pages > 1) {
+            lines.add(plugin.getMessage("search.page", current, pages));
+        }
+        for (String line : lines) {
+            source.sendMessage(net.kyori.adventure.text.Component.text(line));
+        }
+    }
+
+    /**
+     * /chatlog convert import &lt;文件&gt; 把插件目录下的文本日志（或 .gz 归档）导入二进制日志；
+     * /chatlog convert export &lt;起始日期&gt; [结束日期] 把二进制日志导出为文本日志；
+     * /chatlog convert merge 按时间把 chat.log 与各服务器分区合并为 merged-chat.log
+     */
+    private void convert(CommandSource source, String[] args) {
+        File pluginDir = plugin.getPluginDir();
+        if (args.length == 2 && args[1].equalsIgnoreCase("merge")) {
+            File out = new File(pluginDir, "merged-chat.log");
+            plugin.runAsync(() -> {
+                try {
+                    long lines = plugin.getLogManager().mergePartitions(out);
+                    send(source, "convert.merged", lines, out.getName());
+                } catch (IOException e) {
+                    logger.error("合并分区日志时发生错误", e);
+                    send(source, "convert.merge_failed", e.getMessage());
+                }
+            });
+            return;
+        }
+        if (args.length < 3 || !(args[1].equalsIgnoreCase("import") || args[1].equalsIgnoreCase("export"))) {
+            send(source, "convert.usage");
+            return;
+        }
+        File binlogDir = new File(pluginDir, "binlog");
+        long segmentBytes = plugin.getConfig().getBinaryLogSegmentBytes();
+
+        if (args[1].equalsIgnoreCase("import")) {
+            File textFile = new File(pluginDir, args[2]);
+            if (!isInside(pluginDir, textFile) || !textFile.isFile()) {
+                send(source, "convert.file_not_found", args[2]);
+                return;
+            }
+            plugin.runAsync(() -> {
+                // 导入的记录写入单独的段，全部写完后才对查询与导出可见；失败时删除，重试不会重复导入
+                BinaryLogStore store = BinaryLogStore.forImport(logger, binlogDir, segmentBytes);
+                try {
+                    BinaryLogConverter.Result result = BinaryLogConverter.importText(logger, textFile, store);
+                    store.close();
+                    send(source, "convert.imported", result.converted(), result.skipped());
+                } catch (IOException | RuntimeException e) {
+                    store.abort();
+                    logger.error("导入文本日志时发生错误: {}", textFile.getName(), e);
+                    send(source, "convert.import_failed", e.getMessage());
+                }
+            });
+            return;
+        }
+
+        LocalDate fromDay;
+        LocalDate toDay;
+        try {
+            fromDay = LocalDate.parse(args[2]);
+            toDay = args.length > 3 ? LocalDate.parse(args[3]) : fromDay;
+        } catch (DateTimeParseException e) {
+            send(source, "convert.invalid_date");
+            return;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long from = fromDay.atStartOfDay(zone).toInstant().toEpochMilli();
+        long to = toDay.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+        String prefix = "export-" + fromDay + "_" + toDay;
+        File chatFile = new File(pluginDir, prefix + "-chat.log");
+        File warnFile = new File(pluginDir, prefix + "-warn.log");
+        BinaryLogStore live = plugin.getLogManager().getBinaryLog();
+        plugin.runAsync(() -> {
+            BinaryLogStore store = live != null ? live : new BinaryLogStore(logger, binlogDir, segmentBytes);
+            try {
+                BinaryLogConverter.Result result = BinaryLogConverter.exportText(logger, store, from, to, chatFile, warnFile);
+                send(source, "convert.exported", result.converted(), chatFile.getName(), warnFile.getName());
+            } catch (IOException e) {
+                logger.error("导出二进制日志时发生错误", e);
+                send(source, "convert.export_failed", e.getMessage());
+            }
+        });
+    }
+
+    private static boolean isInside(File dir, File file) {
+        try {
+            return file.getCanonicalPath().startsWith(dir.getCanonicalPath() + File.separator);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private String formatLatency(String stageKey, LatencyHistogram histogram) {
+        return plugin.getMessage("stats.latency", plugin.getMessage(stageKey), histogram.getCount(),
+                oneDecimal(histogram.getMean() / 1000.0),
+                oneDecimal(histogram.getPercentile(50) / 1000.0), oneDecimal(histogram.getPercentile(99) / 1000.0),
+                oneDecimal(histogram.getPercentile(99.9) / 1000.0), oneDecimal(histogram.getMax() / 1000.0));
+    }
+
+    private void appendTopHits(List<String> lines, String nameKey, FilterMatcher matcher) {
+        lines.add(plugin.getMessage("stats.top_hits", plugin.getMessage(nameKey), TOP_HITS,
+                matcher.size(), matcher.getUnhitCount()));
+        for (FilterMatcher.RuleHits hits : matcher.getTopHits(TOP_HITS)) {
+            lines.add(plugin.getMessage("stats.top_hit", hits.hits(), hits.pattern()));
+        }
+        Map<String, Long> exceeded = matcher.getBudget().getExceeded();
+        if (!exceeded.isEmpty()) {
+            lines.add(plugin.getMessage("stats.budget_exceeded", exceeded));
+        }
+    }
+
+    private static String oneDecimal(double value) {
+        return String.format("%.1f", value);
+    }
+
+    private void send(CommandSource source, String key, Object... args) {
+        source.sendMessage(net.kyori.adventure.text.Component.text(plugin.getMessage(key, args)));
+    }
+
     @Override
     public boolean hasPermission(final Invocation invocation) {
         return invocation.source().hasPermission("chatlog.admin");
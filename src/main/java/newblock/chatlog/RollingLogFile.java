@@ -0,0 +1,175 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * 长期打开的日志文件，按日期或大小切分为归档段
+ * <p>
+ * 切分只关闭写入流并重命名文件，压缩与清理交给 {@link LogArchiver} 的后台线程。
+ * 记录由 {@link LogLineEncoder} 直接编码进复用的直接缓冲区，写满或刷盘时写入长期打开的
+ * {@link FileChannel}，写一行不产生中间字符串。
+ */
+public class RollingLogFile {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Logger logger;
+    private final File file;
+    private final String name;            // 日志名（chat 或 warn），用于归档命名
+    private final LogArchiver archiver;   // 未启用轮转时为null
+    private final ZoneId zone;
+    private final LogLineEncoder encoder;
+    private final ByteBuffer buffer;      // 已编码但尚未写入文件的内容
+
+    private FileChannel channel;
+    private long size;                    // 当前段的字节数
+    private volatile long bytesWritten;   // 累计写入的字节数，只在持锁时修改
+    private LocalDate segmentDay;         // 当前段内容所属的日期
+    private long nextDayStart;            // 下一天零点的毫秒时间戳
+
+    /**
+     * 创建日志文件
+     *
+     * @param logger 日志记录器
+     * @param file 日志文件
+     * @param name 日志名（chat 或 warn）
+     * @param archiver 归档器，为null时不切分
+     */
+    public RollingLogFile(Logger logger, File file, String name, LogArchiver archiver) {
+        this.logger = logger;
+        this.file = file;
+        this.name = name;
+        this.archiver = archiver != null && archiver.isEnabled() ? archiver : null;
+        this.zone = ZoneId.systemDefault();
+        this.encoder = new LogLineEncoder();
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * 写入一条记录（不刷盘）
+     *
+     * @param entry 日志记录，其时间戳用于判断是否跨天
+     */
+    public synchronized void write(LogEntry entry) {
+        try {
+            if (channel == null) {
+                open(entry.timestamp());
+            }
+            if (archiver != null && shouldRoll(entry.timestamp())) {
+                roll(entry.timestamp());
+            }
+            int bytes = encoder.encode(entry, buffer, this::drain);
+            size += bytes;
+            bytesWritten += bytes;
+        } catch (IOException e) {
+            logger.error("写入日志时发生错误: {}", file.getName(), e);
+            close();
+        }
+    }
+
+    /**
+     * 把缓冲区内容刷入文件
+     */
+    public synchronized void flush() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            drain(buffer);
+        } catch (IOException e) {
+            logger.error("刷新日志时发生错误: {}", file.getName(), e);
+            close();
+        }
+    }
+
+    /**
+     * 是否有尚未刷入文件的内容
+     *
+     * @return 缓冲区不为空时返回true
+     */
+    public synchronized boolean hasBuffered() {
+        return buffer.position() > 0;
+    }
+
+    /**
+     * 关闭写入流，下次写入时重新打开
+     */
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            drain(buffer);
+        } catch (IOException e) {
+            logger.error("关闭日志文件时发生错误: {}", file.getName(), e);
+        } finally {
+            // 写入失败的内容不再重试，避免下次打开后重复写入半行
+            buffer.clear();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.error("关闭日志文件时发生错误: {}", file.getName(), e);
+            }
+            channel = null;
+        }
+    }
+
+    private void drain(ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private void open(long timestamp) throws IOException {
+        size = file.length();
+        // 续写已有文件时，以其最后修改时间作为当前段的日期，跨天重启后第一次写入即会切分
+        setSegmentDay(size > 0 ? file.lastModified() : timestamp);
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private boolean shouldRoll(long timestamp) {
+        if (size == 0) {
+            return false;
+        }
+        return (archiver.isDaily() && timestamp >= nextDayStart)
+                || (archiver.getMaxBytes() > 0 && size >= archiver.getMaxBytes());
+    }
+
+    private void roll(long timestamp) throws IOException {
+        drain(buffer);
+        channel.close();
+        channel = null;
+        boolean archived = archiver.archive(file, name, segmentDay);
+        open(timestamp);
+        if (!archived) {
+            // 重命名失败时继续写原文件，到下一个切分点再重试
+            size = 0;
+            setSegmentDay(timestamp);
+        }
+    }
+
+    private void setSegmentDay(long timestamp) {
+        segmentDay = LocalDate.ofInstant(Instant.ofEpochMilli(timestamp), zone);
+        nextDayStart = segmentDay.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 获取自创建以来累计写入的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+}
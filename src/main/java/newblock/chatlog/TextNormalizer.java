@@ -0,0 +1,371 @@
+package newblock.chatlog;
+
+import org.slf4j.Logger;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 匹配前对消息做一次规范化，把常见的规避写法还原为普通文字
+ * <p>
+ * 每个码点独立映射（自定义映射、NFKC、小写、形近字、数字谐音、去除分隔符），
+ * BMP 内的映射结果在构建时全部算好，运行时只查表。另外把被空白隔开的单个字符
+ * （如 {@code b a d}）连起来。结果带有到原文的位置映射，替换时仍覆盖原文中对应的字符。
+ * 构建完成后不可变，可在多个线程间共享。
+ */
+public final class TextNormalizer {
+
+    /**
+     * 规范化步骤
+     */
+    public enum Stage {
+        NFKC,       // 全角、兼容字符还原（ｂａｄ -> bad，① -> 1）
+        CASE,       // 转为小写
+        HOMOGLYPH,  // 西里尔、希腊字母中的形近字（а -> a）
+        LEET,       // 数字与符号谐音（b4d -> bad，$ -> s）
+        SEPARATOR,  // 去除标点、符号、零宽字符与组合附加符号，连接被空白隔开的单个字符
+        CUSTOM      // normalize.yml 中的自定义映射（繁简、拼音等）
+    }
+
+    private static final String FILE_NAME = "normalize.yml";
+
+    // 成对出现：形近字 -> 拉丁字母
+    private static final String HOMOGLYPHS = ""
+            + "аaбbвBеeёeкkмMнHоoрpсcтTуyхxѕsіiїiјjԁdԛqԝwһhӏlɡgԍg"
+            + "АAВBЕEЁEКKМMНHОOРPСCТTУYХXЅSІIЇIЈJ"
+            + "αaβbεeιiκkνvοoρpτtυuχxωw"
+            + "ΑAΒBΕEΗHΙIΚKΜMΝNΟOΡPΤTΥYΧXΖZ";
+    private static final String LEET = "0o1i3e4a5s7t8b@a$s";
+
+    private final Set<Stage> stages;
+    private final String[] table;           // BMP 码点 -> 映射结果，null 表示不变
+    private final Map<Integer, String> custom;
+
+    /**
+     * 规范化结果
+     *
+     * @param text 规范化后的文本
+     * @param starts 规范化文本每个字符对应的原文起始位置，与原文相同时为null
+     * @param ends 规范化文本每个字符对应的原文结束位置（不含），与原文相同时为null
+     */
+    public record Normalized(String text, int[] starts, int[] ends) {
+
+        /**
+         * 把规范化文本中的区间换算为原文中的区间
+         *
+         * @param start 起始位置（含）
+         * @param end 结束位置（不含），必须大于 start
+         * @return 高 32 位为原文起始位置，低 32 位为原文结束位置
+         */
+        public long toOriginal(int start, int end) {
+            if (starts == null) {
+                return ((long) start << 32) | end;
+            }
+            return ((long) starts[start] << 32) | ends[end - 1];
+        }
+    }
+
+    private TextNormalizer(Set<Stage> stages, Map<Integer, String> custom) {
+        this.stages = stages.isEmpty() ? EnumSet.noneOf(Stage.class) : EnumSet.copyOf(stages);
+        this.custom = Map.copyOf(custom);
+        this.table = new String[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (Character.isSurrogate((char) c)) {
+                continue;
+            }
+            String mapped = mapSlow(c);
+            if (mapped.length() != 1 || mapped.charAt(0) != c) {
+                table[c] = mapped;
+            }
+        }
+    }
+
+    /**
+     * 按配置创建规范化器
+     *
+     * @param logger 日志记录器
+     * @param pluginDir 插件目录，启用 CUSTOM 时从中读取 normalize.yml
+     * @param stages 启用的步骤
+     * @return 规范化器，没有启用任何步骤时返回null
+     */
+    public static TextNormalizer create(Logger logger, File pluginDir, Set<Stage> stages) {
+        if (stages.isEmpty()) {
+            return null;
+        }
+        Map<Integer, String> custom = stages.contains(Stage.CUSTOM)
+                ? loadCustom(logger, new File(pluginDir, FILE_NAME))
+                : Map.of();
+        TextNormalizer normalizer = new TextNormalizer(stages, custom);
+        logger.info("已启用消息规范化: {}", normalizer.stages);
+        return normalizer;
+    }
+
+    /**
+     * 规范化一条文本
+     *
+     * @param text 原文
+     * @return 规范化结果，没有任何变化时 starts 与 ends 为null
+     */
+    public Normalized normalize(String text) {
+        int n = text.length();
+        StringBuilder sb = null;
+        int[] starts = null;
+        int[] ends = null;
+        for (int i = 0; i < n; ) {
+            int cp = text.codePointAt(i);
+            int cpLen = Character.charCount(cp);
+            String mapped = cpLen == 1 ? table[cp] : mapSupplementary(cp);
+            if (sb == null) {
+                if (mapped == null) {
+                    i += cpLen;
+                    continue;
+                }
+                // 第一次发生变化，此前的字符原样复制
+                sb = new StringBuilder(n + 16);
+                sb.append(text, 0, i);
+                starts = new int[n + 16];
+                ends = new int[n + 16];
+                for (int k = 0; k < i; k++) {
+                    starts[k] = k;
+                    ends[k] = k + 1;
+                }
+            }
+            int from = sb.length();
+            if (mapped == null) {
+                sb.append(text, i, i + cpLen);
+            } else {
+                sb.append(mapped);
+            }
+            if (sb.length() > starts.length) {
+                starts = Arrays.copyOf(starts, sb.length() * 2);
+                ends = Arrays.copyOf(ends, sb.length() * 2);
+            }
+            for (int k = from; k < sb.length(); k++) {
+                starts[k] = i;
+                ends[k] = i + cpLen;
+            }
+            i += cpLen;
+        }
+
+        if (!stages.contains(Stage.SEPARATOR)) {
+            return sb == null ? new Normalized(text, null, null) : new Normalized(sb.toString(), starts, ends);
+        }
+        CharSequence current = sb == null ? text : sb;
+        if (!hasSpacedSingles(current)) {
+            return sb == null ? new Normalized(text, null, null) : new Normalized(sb.toString(), starts, ends);
+        }
+        if (sb == null) {
+            starts = new int[n];
+            ends = new int[n];
+            for (int k = 0; k < n; k++) {
+                starts[k] = k;
+                ends[k] = k + 1;
+            }
+        }
+        return joinSpacedSingles(current, starts, ends);
+    }
+
+    /**
+     * 是否存在被空白隔开的两个单字符片段
+     */
+    private static boolean hasSpacedSingles(CharSequence s) {
+        int n = s.length();
+        for (int i = 1; i + 1 < n; i++) {
+            if (Character.isWhitespace(s.charAt(i)) && isSingle(s, i - 1, true)) {
+                int j = i;
+                while (j < n && Character.isWhitespace(s.charAt(j))) {
+                    j++;
+                }
+                if (j < n && isSingle(s, j, false)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 去掉两侧都是单字符片段的空白，例如 "b a d word" -> "bad word"
+     */
+    private static Normalized joinSpacedSingles(CharSequence s, int[] starts, int[] ends) {
+        int n = s.length();
+        StringBuilder out = new StringBuilder(n);
+        int[] outStarts = new int[n];
+        int[] outEnds = new int[n];
+        int len = 0;
+        for (int i = 0; i < n; ) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c) && i > 0 && isSingle(s, i - 1, true)) {
+                int j = i;
+                while (j < n && Character.isWhitespace(s.charAt(j))) {
+                    j++;
+                }
+                if (j < n && isSingle(s, j, false)) {
+                    i = j;
+                    continue;
+                }
+            }
+            out.append(c);
+            outStarts[len] = starts[i];
+            outEnds[len] = ends[i];
+            len++;
+            i++;
+        }
+        return new Normalized(out.toString(), outStarts, outEnds);
+    }
+
+    /**
+     * 位置 i 处的字符是否单独构成一个片段（前后都是空白或文本边界）
+     *
+     * @param backward 为true时 i 是片段的最后一个字符，否则是第一个字符
+     */
+    private static boolean isSingle(CharSequence s, int i, boolean backward) {
+        if (Character.isWhitespace(s.charAt(i))) {
+            return false;
+        }
+        int other = backward ? i - 1 : i + 1;
+        return other < 0 || other >= s.length() || Character.isWhitespace(s.charAt(other));
+    }
+
+    private String mapSupplementary(int cp) {
+        String mapped = mapSlow(cp);
+        return mapped.equals(new String(Character.toChars(cp))) ? null : mapped;
+    }
+
+    private String mapSlow(int cp) {
+        String s = custom.get(cp);
+        if (s == null) {
+            s = new String(Character.toChars(cp));
+        }
+        if (stages.contains(Stage.NFKC)) {
+            s = Normalizer.normalize(s, Normalizer.Form.NFKC);
+        }
+        if (stages.contains(Stage.CASE)) {
+            s = s.toLowerCase(Locale.ROOT);
+        }
+        if (stages.contains(Stage.HOMOGLYPH)) {
+            s = replacePairs(s, HOMOGLYPHS);
+        }
+        if (stages.contains(Stage.LEET)) {
+            s = replacePairs(s, LEET);
+        }
+        if (stages.contains(Stage.SEPARATOR)) {
+            s = removeSeparators(s);
+        }
+        return s;
+    }
+
+    private static String replacePairs(String s, String pairs) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            for (int p = 0; p < pairs.length(); p += 2) {
+                if (pairs.charAt(p) == c) {
+                    if (sb == null) {
+                        sb = new StringBuilder(s);
+                    }
+                    sb.setCharAt(i, pairs.charAt(p + 1));
+                    break;
+                }
+            }
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    private static String removeSeparators(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            if (!isSeparator(cp)) {
+                sb.appendCodePoint(cp);
+            }
+            i += Character.charCount(cp);
+        }
+        return sb.length() == s.length() ? s : sb.toString();
+    }
+
+    private static boolean isSeparator(int cp) {
+        if (Character.isWhitespace(cp)) {
+            return false;
+        }
+        return switch (Character.getType(cp)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                 Character.OTHER_PUNCTUATION, Character.MATH_SYMBOL, Character.CURRENCY_SYMBOL,
+                 Character.MODIFIER_SYMBOL, Character.OTHER_SYMBOL, Character.FORMAT,
+                 Character.NON_SPACING_MARK, Character.ENCLOSING_MARK, Character.CONTROL -> true;
+            default -> false;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, String> loadCustom(Logger logger, File file) {
+        if (!file.exists()) {
+            createDefaultCustom(logger, file);
+        }
+        Map<Integer, String> custom = new HashMap<>();
+        Yaml yaml = new Yaml(new SafeConstructor());
+        try (InputStream in = new FileInputStream(file)) {
+            Map<String, Object> data = yaml.load(in);
+            Object mapObj = data == null ? null : data.get("map");
+            if (mapObj instanceof Map) {
+                for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) mapObj).entrySet()) {
+                    String from = String.valueOf(entry.getKey());
+                    if (from.codePointCount(0, from.length()) != 1 || entry.getValue() == null) {
+                        logger.warn("{} 中的映射 {} 无效：左侧必须是单个字符，跳过", FILE_NAME, from);
+                        continue;
+                    }
+                    custom.put(from.codePointAt(0), String.valueOf(entry.getValue()));
+                }
+            }
+            logger.info("已加载 {} 条自定义字符映射", custom.size());
+        } catch (IOException | YAMLException e) {
+            logger.error("读取 {} 时发生错误，自定义映射为空", FILE_NAME, e);
+        }
+        return custom;
+    }
+
+    private static void createDefaultCustom(Logger logger, File file) {
+        String defaultMap = ""
+                + "# ChatLog 自定义字符映射（在 config.yml 的 Normalize 中加入 CUSTOM 后生效）\n"
+                + "# 每项把一个字符映射为一个字符串，在其他规范化步骤之前执行\n"
+                + "# 可用于繁体转简体、同音字、拼音等，按需补充\n"
+                + "map:\n"
+                + "  '們': '们'\n"
+                + "  '這': '这'\n"
+                + "  '個': '个'\n"
+                + "  '來': '来'\n"
+                + "  '說': '说'\n"
+                + "  '媽': '妈'\n"
+                + "  '爾': '尔'\n"
+                + "  '孫': '孙'\n"
+                + "  '殺': '杀'\n"
+                + "  '亂': '乱'\n"
+                + "  '賣': '卖'\n"
+                + "  '買': '买'\n"
+                + "  '號': '号'\n"
+                + "  '錢': '钱'\n"
+                + "  '幣': '币'\n"
+                + "  '滾': '滚'\n";
+        try {
+            Files.write(file.toPath(), defaultMap.getBytes(StandardCharsets.UTF_8));
+            logger.info("已生成默认 {}", FILE_NAME);
+        } catch (IOException e) {
+            logger.error("创建默认 {} 时出错", FILE_NAME, e);
+        }
+    }
+}
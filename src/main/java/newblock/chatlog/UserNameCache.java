@@ -0,0 +1,70 @@
+package newblock.chatlog;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存在线玩家用户名的违禁词判定结果
+ * <p>
+ * 用户名在一次会话中不会改变，因此只需在登录或首次使用时检查一次。
+ * 每条结果记录了当时的过滤器代数，过滤器重新加载后自动失效。
+ */
+public class UserNameCache {
+    private final FilterManager filterManager;
+    private final Map<UUID, Verdict> verdicts;
+
+    /**
+     * 一次判定结果
+     *
+     * @param generation 判定时的过滤器代数
+     * @param forbidden 用户名是否包含违禁词
+     */
+    private record Verdict(long generation, boolean forbidden) {
+    }
+
+    /**
+     * 创建用户名判定缓存
+     *
+     * @param filterManager 过滤器管理器
+     */
+    public UserNameCache(FilterManager filterManager) {
+        this.filterManager = filterManager;
+        this.verdicts = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 检查玩家用户名是否包含违禁词，优先使用缓存
+     *
+     * @param uuid 玩家UUID
+     * @param userName 玩家用户名
+     * @return 包含违禁词返回true
+     */
+    public boolean isForbidden(UUID uuid, String userName) {
+        // 先读代数再判定：判定期间若发生重载，写入的是旧代数，下次会重新判定
+        long generation = filterManager.getGeneration();
+        Verdict verdict = verdicts.get(uuid);
+        if (verdict != null && verdict.generation() == generation) {
+            return verdict.forbidden();
+        }
+        boolean forbidden = filterManager.containsForbiddenWords(userName);
+        verdicts.put(uuid, new Verdict(generation, forbidden));
+        return forbidden;
+    }
+
+    /**
+     * 移除玩家的缓存（玩家断开连接时调用）
+     *
+     * @param uuid 玩家UUID
+     */
+    public void evict(UUID uuid) {
+        verdicts.remove(uuid);
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void clear() {
+        verdicts.clear();
+    }
+}
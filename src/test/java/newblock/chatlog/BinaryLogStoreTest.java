@@ -0,0 +1,125 @@
+package newblock.chatlog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link BinaryLogStore} 的写入、按玩家与时间查询、重新打开与末尾不完整时的恢复
+ */
+class BinaryLogStoreTest {
+    private static final Logger LOGGER = NOPLogger.NOP_LOGGER;
+    private static final long SEGMENT_BYTES = 1024 * 1024;
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void queryFiltersByPlayerAndTime() throws IOException {
+        BinaryLogStore store = new BinaryLogStore(LOGGER, dir.toFile(), SEGMENT_BYTES);
+        writeSample(store, 1000);
+
+        List<LogEntry> alice = store.query("ALICE", BASE, BASE + 99, Integer.MAX_VALUE);
+        assertEquals(50, alice.size());
+        assertTrue(alice.stream().allMatch(e -> e.playerName().equals("Alice")));
+        assertEquals("message 0", alice.get(0).content());
+
+        List<LogEntry> all = store.query(null, BASE + 10, BASE + 19, Integer.MAX_VALUE);
+        assertEquals(10, all.size());
+        assertEquals(LogEntry.Type.COMMAND, all.get(1).type());
+        assertEquals("lobby", all.get(0).serverName());
+
+        assertEquals(3, store.query(null, Long.MIN_VALUE, Long.MAX_VALUE, 3).size());
+        assertTrue(store.query("nobody", Long.MIN_VALUE, Long.MAX_VALUE, 10).isEmpty());
+        store.close();
+    }
+
+    @Test
+    void sealedSegmentsAreReadableAfterReopen() throws IOException {
+        BinaryLogStore store = new BinaryLogStore(LOGGER, dir.toFile(), SEGMENT_BYTES);
+        writeSample(store, 1000);
+        store.close();
+
+        File[] indexes = dir.toFile().listFiles((d, name) -> name.endsWith(BinaryLogStore.INDEX_SUFFIX));
+        assertEquals(1, indexes.length);
+
+        BinaryLogStore reopened = new BinaryLogStore(LOGGER, dir.toFile(), SEGMENT_BYTES);
+        assertEquals(500, reopened.query("bob", Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE).size());
+        reopened.write(new LogEntry(LogEntry.Type.CHAT, BASE + 5000, "lobby", "Bob", "after reopen"));
+        reopened.close();
+
+        assertEquals(2, reopened.listSegments().size());
+        List<LogEntry> bob = new BinaryLogStore(LOGGER, dir.toFile(), SEGMENT_BYTES)
+                .query("bob", Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+        assertEquals(501, bob.size());
+        assertEquals("after reopen", bob.get(500).content());
+    }
+
+    @Test
+    void tornTailIsIgnoredWhenIndexIsRebuilt() throws IOException {
+        BinaryLogStore store = new BinaryLogStore(LOGGER, dir.toFile(), SEGMENT_BYTES);
+        writeSample(store, 200);
+        store.flush();
+
+        // 模拟进程在写入最后一条记录时退出：段没有 .idx，末尾只写了一半
+        File segment = store.listSegments().get(0);
+        assertFalse(new File(dir.toFile(), segment.getName().replace(BinaryLogStore.SEGMENT_SUFFIX,
+                BinaryLogStore.INDEX_SUFFIX)).exists());
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        BinaryLogStore recovered = new BinaryLogStore(LOGGER, dir.toFile(), SEGMENT_BYTES);
+        List<LogEntry> entries = recovered.query(null, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+        assertEquals(199, entries.size());
+        assertEquals("message 198", entries.get(198).content());
+        assertTrue(new File(dir.toFile(), segment.getName().replace(BinaryLogStore.SEGMENT_SUFFIX,
+                BinaryLogStore.INDEX_SUFFIX)).exists());
+    }
+
+    @Test
+    void importIsVisibleOnlyAfterClose() throws IOException {
+        BinaryLogStore store = BinaryLogStore.forImport(LOGGER, dir.toFile(), SEGMENT_BYTES);
+        writeSample(store, 100);
+        store.flush();
+        assertTrue(store.listSegments().isEmpty());
+
+        store.close();
+        assertEquals(1, store.listSegments().size());
+        assertEquals(100, new BinaryLogStore(LOGGER, dir.toFile(), SEGMENT_BYTES)
+                .query(null, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void abortedImportLeavesNoSegments() {
+        // 段大小取下限，写入足够多的记录让导入跨越多个段
+        BinaryLogStore store = BinaryLogStore.forImport(LOGGER, dir.toFile(), 0);
+        writeSample(store, 10_000);
+        store.abort();
+
+        assertTrue(store.listSegments().isEmpty());
+        assertEquals(0, dir.toFile().list().length);
+    }
+
+    /**
+     * 写入 count 条记录，玩家在 Alice 与 Bob 之间交替，每条相隔 1 毫秒，奇数条为命令
+     */
+    private static void writeSample(BinaryLogStore store, int count) {
+        for (int i = 0; i < count; i++) {
+            LogEntry.Type type = i % 2 == 0 ? LogEntry.Type.CHAT : LogEntry.Type.COMMAND;
+            store.write(new LogEntry(type, BASE + i, "lobby", i % 2 == 0 ? "Alice" : "Bob", "message " + i));
+        }
+    }
+}
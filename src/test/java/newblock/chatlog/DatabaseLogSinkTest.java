@@ -0,0 +1,91 @@
+package newblock.chatlog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link DatabaseLogSink} 的批量写入、查询、重新打开，以及批量插入失败时的逐条重试
+ */
+class DatabaseLogSinkTest {
+    private static final Logger LOGGER = NOPLogger.NOP_LOGGER;
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesAreQueryableByPlayerAndTime() throws SQLException {
+        DatabaseLogSink sink = open(10);
+        for (int i = 0; i < 25; i++) {
+            sink.write(new LogEntry(LogEntry.Type.CHAT, BASE + i, "lobby", i % 2 == 0 ? "Alice" : "Bob", "message " + i));
+        }
+
+        // 最后 5 条还在批次中，查询前先提交
+        assertEquals(25, sink.query(null, Long.MIN_VALUE, Long.MAX_VALUE, 100).size());
+        List<LogEntry> alice = sink.query("ALICE", BASE, BASE + 9, 100);
+        assertEquals(5, alice.size());
+        assertEquals("Alice", alice.get(0).playerName());
+        assertEquals("message 8", alice.get(4).content());
+        assertEquals(3, sink.query(null, Long.MIN_VALUE, Long.MAX_VALUE, 3).size());
+        sink.close();
+    }
+
+    @Test
+    void recordsSurviveReopen() throws SQLException {
+        DatabaseLogSink sink = open(100);
+        sink.write(new LogEntry(LogEntry.Type.COMMAND, BASE, "survival", "Alice", "home"));
+        sink.close();
+
+        DatabaseLogSink reopened = open(100);
+        List<LogEntry> entries = reopened.query("alice", Long.MIN_VALUE, Long.MAX_VALUE, 10);
+        assertEquals(1, entries.size());
+        assertEquals(LogEntry.Type.COMMAND, entries.get(0).type());
+        assertEquals("survival", entries.get(0).serverName());
+        assertEquals(BASE, entries.get(0).timestamp());
+        reopened.close();
+    }
+
+    @Test
+    void nullFieldsAreStoredAsNull() throws SQLException {
+        DatabaseLogSink sink = open(1);
+        sink.write(new LogEntry(LogEntry.Type.CHAT, BASE, null, "Alice", null));
+
+        List<LogEntry> entries = sink.query(null, Long.MIN_VALUE, Long.MAX_VALUE, 10);
+        assertEquals(1, entries.size());
+        assertEquals("null", entries.get(0).serverName());
+        assertEquals("null", entries.get(0).content());
+        sink.close();
+    }
+
+    @Test
+    void failedBatchIsRetriedRowByRow() throws SQLException {
+        DatabaseLogSink sink = open(10);
+        for (int i = 0; i < 10; i++) {
+            // 玩家名超过列宽的一条无法写入，同一批的其他记录不受影响
+            String player = i == 4 ? "x".repeat(100) : "Alice";
+            sink.write(new LogEntry(LogEntry.Type.CHAT, BASE + i, "lobby", player, "message " + i));
+        }
+
+        List<LogEntry> entries = sink.query(null, Long.MIN_VALUE, Long.MAX_VALUE, 100);
+        assertEquals(9, entries.size());
+        assertTrue(entries.stream().noneMatch(e -> e.content().equals("message 4")));
+        sink.close();
+    }
+
+    private DatabaseLogSink open(int batchSize) {
+        DatabaseLogSink sink = DatabaseLogSink.open(LOGGER, new File(dir.toFile(), "chatlog"), batchSize);
+        assertNotNull(sink);
+        return sink;
+    }
+}
@@ -0,0 +1,117 @@
+package newblock.chatlog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link FilterManager#replaceFilteredWords(String)} 的替换语义：
+ * 所有规则对原文匹配，命中区间合并后统一覆盖，不做链式替换
+ */
+class FilterReplaceTest {
+    private static final Logger LOGGER = NOPLogger.NOP_LOGGER;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void noMatchReturnsNull() throws IOException {
+        FilterManager manager = manager("*", "bad");
+        assertNull(manager.replaceFilteredWords("hello"));
+    }
+
+    @Test
+    void matchIsCaseInsensitive() throws IOException {
+        FilterManager manager = manager("*", "bad");
+        assertEquals("*** ***", manager.replaceFilteredWords("bad BaD"));
+    }
+
+    @Test
+    void overlappingHitsAcrossPatternsMergeIntoOneSpan() throws IOException {
+        FilterManager manager = manager("ab", "bad", "badword");
+        assertEquals("abababa", manager.replaceFilteredWords("badword"));
+    }
+
+    @Test
+    void adjacentHitsAcrossPatternsAreMaskedSeparately() throws IOException {
+        FilterManager manager = manager("ab", "foo", "bar");
+        assertEquals("abaaba", manager.replaceFilteredWords("foobar"));
+    }
+
+    @Test
+    void laterPatternDoesNotSeeEarlierReplacement() throws IOException {
+        // 链式替换时第二条规则会命中第一条产生的 ***，现在两条规则都只看原文
+        FilterManager manager = manager("*", "bad", "\\*{3}");
+        assertEquals("*** ok", manager.replaceFilteredWords("bad ok"));
+        assertEquals("*** ***", manager.replaceFilteredWords("bad ***"));
+    }
+
+    @Test
+    void firstPatternWinsOnSameSpanRegardlessOfOrder() throws IOException {
+        // 两条规则命中同一段时只覆盖一次，结果与规则顺序无关
+        String expected = "hi #@#@#@# there";
+        assertEquals(expected, manager("#@", "spammer", "spam+er").replaceFilteredWords("hi spammer there"));
+        assertEquals(expected, manager("#@", "spam+er", "spammer").replaceFilteredWords("hi spammer there"));
+    }
+
+    @Test
+    void firstAlternativeWinsWithinOnePattern() throws IOException {
+        // 同一条规则内按正则的查找语义，最左侧、先列出的分支先命中
+        FilterManager manager = manager("*", "bad|badword");
+        assertEquals("***word", manager.replaceFilteredWords("badword"));
+    }
+
+    @Test
+    void selfOverlappingLiteralKeepsFindSemantics() throws IOException {
+        FilterManager manager = manager("*", "aa");
+        assertEquals("**a", manager.replaceFilteredWords("aaa"));
+        assertEquals("****", manager.replaceFilteredWords("aaaa"));
+    }
+
+    @Test
+    void emptyReplaceWithFallsBackToStar() throws IOException {
+        FilterManager manager = manager("", "bad");
+        assertEquals("***!", manager.replaceFilteredWords("bad!"));
+    }
+
+    @Test
+    void maskLongerThan256CharsRepeatsReplaceWith() throws IOException {
+        // 3 个字符的替换串在 256 字符的掩码里不能整除，掩码补齐到 258，超长的命中依然连续
+        FilterManager manager = manager("xyz", "a{300,}");
+        String text = "<" + "a".repeat(600) + ">";
+        assertEquals("<" + "xyz".repeat(200) + ">", manager.replaceFilteredWords(text));
+    }
+
+    @Test
+    void longMaskAcrossMergedSpans() throws IOException {
+        FilterManager manager = manager("ab", "a{200}", "a{150}b");
+        String text = "a".repeat(349) + "b";
+        assertEquals("ab".repeat(175), manager.replaceFilteredWords(text));
+    }
+
+    private FilterManager manager(String replaceWith, String... patterns) throws IOException {
+        File pluginDir = dir.toFile();
+        ChatlogConfig config = new ChatlogConfig(LOGGER, pluginDir);
+        config.loadConfig();
+        StringBuilder yaml = new StringBuilder("replace_with: '" + replaceWith + "'\npatterns:\n");
+        for (String pattern : List.of(patterns)) {
+            yaml.append("  - '").append(pattern.replace("'", "''")).append("'\n");
+        }
+        Files.writeString(dir.resolve("filter_replace.yml"), yaml, StandardCharsets.UTF_8);
+
+        FilterManager manager = new FilterManager(LOGGER, config);
+        manager.setReplaceConfig(new FilterReplaceConfig(LOGGER, pluginDir));
+        return manager;
+    }
+}
@@ -0,0 +1,87 @@
+package newblock.chatlog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 区间合并与掩码覆盖
+ */
+class MatchIntervalsTest {
+    private static final char[] STARS = "*".repeat(256).toCharArray();
+    private static final char[] AB = "ab".repeat(128).toCharArray();
+
+    private MatchIntervals intervals;
+
+    @BeforeEach
+    void setUp() {
+        intervals = new MatchIntervals();
+    }
+
+    @Test
+    void noIntervalsKeepsText() {
+        assertTrue(intervals.isEmpty());
+        assertEquals("hello", intervals.apply("hello", STARS));
+    }
+
+    @Test
+    void emptyIntervalIsIgnored() {
+        intervals.add(3, 3);
+        intervals.add(4, 2);
+        assertTrue(intervals.isEmpty());
+    }
+
+    @Test
+    void overlappingIntervalsAreMaskedAsOneSpan() {
+        // badword：bad [0,3) 与 badword [0,7) 重叠，合并后从掩码开头连续填充
+        intervals.add(0, 3);
+        intervals.add(0, 7);
+        assertEquals("abababa!", intervals.apply("badword!", AB));
+    }
+
+    @Test
+    void partiallyOverlappingIntervalsMerge() {
+        intervals.add(4, 8);
+        intervals.add(2, 6);
+        assertEquals("xx******yy", intervals.apply("xxabcdefyy", STARS));
+        intervals.clear();
+        intervals.add(2, 6);
+        intervals.add(4, 8);
+        assertEquals("xxabababyy", intervals.apply("xxabcdefyy", AB));
+    }
+
+    @Test
+    void adjacentIntervalsAreMaskedSeparately() {
+        // 首尾相接不算重叠，各自从掩码开头填充，与逐个替换的结果一致
+        intervals.add(0, 3);
+        intervals.add(3, 6);
+        assertEquals("abaaba", intervals.apply("foobar", AB));
+    }
+
+    @Test
+    void intervalsAddedOutOfOrderAreSorted() {
+        intervals.add(6, 7);
+        intervals.add(0, 1);
+        intervals.add(3, 4);
+        assertEquals("*bc*ef*", intervals.apply("abcdefg", STARS));
+    }
+
+    @Test
+    void spanLongerThanMaskRepeatsMask() {
+        String text = "x" + "a".repeat(600) + "y";
+        intervals.add(1, 601);
+        assertEquals("x" + "ab".repeat(300) + "y", intervals.apply(text, AB));
+    }
+
+    @Test
+    void clearResetsForNextText() {
+        intervals.add(0, 2);
+        assertEquals("**c", intervals.apply("abc", STARS));
+        intervals.clear();
+        assertTrue(intervals.isEmpty());
+        intervals.add(1, 2);
+        assertEquals("x*z", intervals.apply("xyz", STARS));
+    }
+}